@@ -56,37 +56,40 @@ public class MainActivity extends AppCompatActivity {
 
 
         //for TimerView2 we will set values manually, not in xml
+        //edit() applies them all at once, with a single recalculation and redraw
 
-        mTimerView2.setGrooveWidth(20);
-        mTimerView2.setProgressWidth(20);
+        mTimerView2.edit()
+                .setGrooveWidth(20)
+                .setProgressWidth(20)
 
-        mTimerView2.setCountdown(false);
+                .setCountdown(false)
 
-        mTimerView2.setGrooveColor(ContextCompat.getColor(getApplication(), R.color.colorArc));
-        mTimerView2.setProgressColor(ContextCompat.getColor(getApplication(), R.color.colorProgress));
-        mTimerView2.setBigTextColor(ContextCompat.getColor(getApplication(), R.color.colorProgress));
-        mTimerView2.setSmallTextColor(ContextCompat.getColor(getApplication(), R.color.colorProgress));
-        mTimerView2.setCircleBackgroundColor(ContextCompat.getColor(getApplication(), R.color.colorBack));
-        mTimerView2.setPlayButtonIconTint(ContextCompat.getColor(getApplication(), R.color.colorProgress));
-        mTimerView2.setPauseButtonIconTint(ContextCompat.getColor(getApplication(), R.color.colorProgress));
+                .setGrooveColor(ContextCompat.getColor(getApplication(), R.color.colorArc))
+                .setProgressColor(ContextCompat.getColor(getApplication(), R.color.colorProgress))
+                .setBigTextColor(ContextCompat.getColor(getApplication(), R.color.colorProgress))
+                .setSmallTextColor(ContextCompat.getColor(getApplication(), R.color.colorProgress))
+                .setCircleBackgroundColor(ContextCompat.getColor(getApplication(), R.color.colorBack))
+                .setPlayButtonIconTint(ContextCompat.getColor(getApplication(), R.color.colorProgress))
+                .setPauseButtonIconTint(ContextCompat.getColor(getApplication(), R.color.colorProgress))
 
-        mTimerView2.setBigTextSize(30);
-        mTimerView2.setSmallTextSize(20);
-        mTimerView2.setPlayButtonTriangleSideLength(40);
+                .setBigTextSize(30)
+                .setSmallTextSize(20)
+                .setPlayButtonTriangleSideLength(40)
 
-        mTimerView2.setFinishIcon(R.drawable.ic_checkmark);
-        mTimerView2.setFinishIconTint(ContextCompat.getColor(getApplication(), R.color.colorProgress));
+                .setFinishIcon(R.drawable.ic_checkmark)
+                .setFinishIconTint(ContextCompat.getColor(getApplication(), R.color.colorProgress))
 
-        // you can also manually set icon for the play button
-        // mTimerView2.setPlayButtonIcon(your resource/drawable here);
+                // you can also manually set icon for the play button
+                // .setPlayButtonIcon(your resource here)
 
-        // and the pause button
-        // mTimerView2.setPauseButtonIcon(your resource/drawable here);
+                // and the pause button
+                // .setPauseButtonIcon(your resource here)
 
-        // and the background circle drawable
-        // mTimerView2.setCircleBackgroundDrawable(your resource/drawable here);
+                // and the background circle drawable
+                // .setCircleBackgroundDrawable(your drawable here)
 
-        mTimerView2.setTimeFormat("mm.ss");
+                .setTimeFormat("mm.ss")
+                .apply();
 
 
     }
@@ -0,0 +1,56 @@
+/**
+ *
+ * Copyright 2017 Dedoxyribose
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+
+
+package ru.dedoxyribose.timerview;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * The cost of formatting the time text on a tick, compared with the SimpleDateFormat the view used before
+ */
+@State(Scope.Thread)
+public class TimeFormatterBenchmark {
+
+    @Param({"mm:ss", "HH:mm:ss", "ss.SSS"})
+    public String pattern;
+
+    private TimeFormatter mFormatter;
+    private long mTime;
+
+    @Setup
+    public void setUp() {
+        mFormatter = new TimeFormatter(pattern);
+    }
+
+    @Benchmark
+    public int timeFormatter() {
+        mTime += 16;
+        return mFormatter.format(mTime);
+    }
+
+    @Benchmark
+    public String simpleDateFormat() {
+        mTime += 16;
+        SimpleDateFormat sdfDate = new SimpleDateFormat(pattern);
+        sdfDate.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return sdfDate.format(new Date(mTime));
+    }
+}
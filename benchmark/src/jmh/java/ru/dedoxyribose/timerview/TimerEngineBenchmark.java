@@ -0,0 +1,68 @@
+/**
+ *
+ * Copyright 2017 Dedoxyribose
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+
+
+package ru.dedoxyribose.timerview;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The cost of the per-tick progress update and of the touch angle conversion
+ */
+@State(Scope.Thread)
+public class TimerEngineBenchmark {
+
+    private FrameTimeSource mTimeSource;
+    private TimerEngine mEngine;
+    private float mTouchX;
+
+    @Setup
+    public void setUp() {
+        mTimeSource = new FrameTimeSource();
+        mEngine = new TimerEngine(mTimeSource);
+        mEngine.setFullTime(Long.MAX_VALUE / 2);
+        mEngine.play();
+    }
+
+    @Benchmark
+    public long tick() {
+        mTimeSource.nanos += 16666666;
+        mEngine.tick();
+        return mEngine.getCurTime();
+    }
+
+    @Benchmark
+    public float tickAndConvertToSweep() {
+        mTimeSource.nanos += 16666666;
+        mEngine.tick();
+        return mEngine.convertTimeToSweep(mEngine.getCurTime());
+    }
+
+    @Benchmark
+    public long convertTouchPointToTime() {
+        mTouchX = mTouchX > 100 ? -100 : mTouchX + 0.5f;
+        double angle = TimerEngine.convertPointToAngle(mTouchX, -37.5f);
+        return mEngine.convertAngleToTime(angle);
+    }
+
+    private static class FrameTimeSource implements TimeSource {
+        long nanos;
+
+        @Override
+        public long nanoTime() {
+            return nanos;
+        }
+    }
+}
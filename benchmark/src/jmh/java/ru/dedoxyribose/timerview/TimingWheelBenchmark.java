@@ -0,0 +1,99 @@
+/**
+ *
+ * Copyright 2017 Dedoxyribose
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package ru.dedoxyribose.timerview;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of scheduling, cancelling and expiring the timeouts of 100k concurrent timers
+ */
+public class TimingWheelBenchmark {
+
+    private static final int TIMERS = 100000;
+
+    private static final TimingWheel.Callback CALLBACK = new TimingWheel.Callback() {
+        @Override
+        public void onExpired(TimingWheel.Timeout timeout, long overshootNanos) {
+        }
+    };
+
+    /**
+     * A wheel with the background load: 100k deadlines spread over the next hour
+     */
+    @State(Scope.Thread)
+    public static class LoadedWheel {
+        final FakeTimeSource timeSource = new FakeTimeSource();
+        TimingWheel wheel;
+        long delay;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            wheel = load(timeSource);
+        }
+    }
+
+    /**
+     * The same, but loaded anew for every invocation, as it gets emptied by it
+     */
+    @State(Scope.Thread)
+    public static class FreshWheel {
+        final FakeTimeSource timeSource = new FakeTimeSource();
+        TimingWheel wheel;
+
+        @Setup(Level.Invocation)
+        public void setUp() {
+            wheel = load(timeSource);
+        }
+    }
+
+    private static TimingWheel load(FakeTimeSource timeSource) {
+        TimingWheel wheel = new TimingWheel(timeSource, 1, TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < TIMERS; i++)
+            wheel.scheduleAt(timeSource.nanos + (i * 36L + 1) * 1000000L, CALLBACK);
+        return wheel;
+    }
+
+    @Benchmark
+    public boolean scheduleAndCancel(LoadedWheel state) {
+        state.delay = state.delay > 3600000 ? 1 : state.delay + 7919;
+        return state.wheel.schedule(state.delay, TimeUnit.MILLISECONDS, CALLBACK).cancel();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TIMERS)
+    public int expireAll(FreshWheel state) {
+        int count = 0;
+        // a pass every 16ms for an hour
+        for (long time = 0; time <= 3600000; time += 16) {
+            count += state.wheel.expire(state.timeSource.nanos + time * 1000000L);
+        }
+        return count;
+    }
+
+    private static class FakeTimeSource implements TimeSource {
+        long nanos = 1000000000L;
+
+        @Override
+        public long nanoTime() {
+            return nanos;
+        }
+    }
+}
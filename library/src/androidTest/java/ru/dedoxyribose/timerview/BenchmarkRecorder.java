@@ -0,0 +1,83 @@
+package ru.dedoxyribose.timerview;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Measures the hot paths on a device in the manner of androidx.benchmark: a warmup followed by
+ * a number of timed runs of a fixed amount of iterations, reporting the per-iteration time.
+ */
+class BenchmarkRecorder {
+
+    private static final String TAG = "TimerViewBenchmark";
+
+    private static final int WARMUP_RUNS = 10;
+    private static final int MEASURED_RUNS = 50;
+    private static final int ITERATIONS_PER_RUN = 1000;
+
+    interface Body {
+        void run(int iteration);
+    }
+
+    private final JSONArray mResults = new JSONArray();
+
+    /**
+     * Measure the body and record the result under the given name
+     */
+    void measure(String name, Body body) throws JSONException {
+
+        for (int run = 0; run < WARMUP_RUNS; run++) {
+            for (int i = 0; i < ITERATIONS_PER_RUN; i++)
+                body.run(i);
+        }
+
+        long[] runNanos = new long[MEASURED_RUNS];
+        for (int run = 0; run < MEASURED_RUNS; run++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS_PER_RUN; i++)
+                body.run(i);
+            runNanos[run] = (System.nanoTime() - start) / ITERATIONS_PER_RUN;
+        }
+        Arrays.sort(runNanos);
+
+        JSONObject timeNs = new JSONObject();
+        timeNs.put("minimum", runNanos[0]);
+        timeNs.put("median", runNanos[MEASURED_RUNS / 2]);
+        timeNs.put("maximum", runNanos[MEASURED_RUNS - 1]);
+
+        JSONObject metrics = new JSONObject();
+        metrics.put("timeNs", timeNs);
+
+        JSONObject result = new JSONObject();
+        result.put("name", name);
+        result.put("metrics", metrics);
+        mResults.put(result);
+
+        Log.i(TAG, name + ": median " + runNanos[MEASURED_RUNS / 2] + " ns");
+    }
+
+    /**
+     * Write the recorded results as JSON
+     */
+    void writeTo(File file) throws JSONException, IOException {
+        JSONObject report = new JSONObject();
+        report.put("benchmarks", mResults);
+
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(report.toString(2).getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+
+        Log.i(TAG, "Results are written to " + file.getAbsolutePath());
+    }
+}
@@ -0,0 +1,101 @@
+package ru.dedoxyribose.timerview;
+
+import android.content.Context;
+import android.graphics.Path;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.json.JSONException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+/**
+ * On-device benchmarks of the TimerView hot paths, including the ones depending on Android (the path building
+ * and the view progress updates). The results are written as JSON to timerview-benchmark.json
+ * in the files dir of the test app.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TimerViewBenchmark {
+
+    private Path mPath;
+    private long mLong;
+    private double mDouble;
+
+    @Test
+    public void benchmarkHotPaths() throws Exception {
+        Context context = InstrumentationRegistry.getTargetContext();
+        BenchmarkRecorder recorder = new BenchmarkRecorder();
+
+        final TimeFormatter formatter = new TimeFormatter("mm:ss");
+        recorder.measure("formatTime", new BenchmarkRecorder.Body() {
+            @Override
+            public void run(int iteration) {
+                mLong += formatter.format(iteration * 16L);
+            }
+        });
+
+        recorder.measure("convertTouchPointToAngle", new BenchmarkRecorder.Body() {
+            @Override
+            public void run(int iteration) {
+                mDouble += TimerEngine.convertPointToAngle(iteration % 200 - 100, -37.5f);
+            }
+        });
+
+        recorder.measure("getEquilateralTriangle", new BenchmarkRecorder.Body() {
+            @Override
+            public void run(int iteration) {
+                mPath = TimerShapes.getEquilateralTriangle(100 + iteration % 10);
+            }
+        });
+
+        recorder.measure("getPauseShape", new BenchmarkRecorder.Body() {
+            @Override
+            public void run(int iteration) {
+                mPath = TimerShapes.getPauseShape(30 + iteration % 10);
+            }
+        });
+
+        recorder.measure("getFinishShape", new BenchmarkRecorder.Body() {
+            @Override
+            public void run(int iteration) {
+                mPath = TimerShapes.getFinishShape(50 + iteration % 10, 12f);
+            }
+        });
+
+        measureUpdateProgress(context, recorder);
+
+        recorder.writeTo(new File(context.getFilesDir(), "timerview-benchmark.json"));
+    }
+
+    /**
+     * Measure the view progress updates on the main thread. From any other thread, setCurTimeMillis() would only
+     * post the update there
+     */
+    private void measureUpdateProgress(final Context context, final BenchmarkRecorder recorder) throws Exception {
+        final JSONException[] error = new JSONException[1];
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final TimerView timerView = new TimerView(context);
+                timerView.setFullTimeMillis(3600000);
+
+                try {
+                    recorder.measure("updateProgress", new BenchmarkRecorder.Body() {
+                        @Override
+                        public void run(int iteration) {
+                            timerView.setCurTimeMillis(iteration * 16L);
+                        }
+                    });
+                } catch (JSONException e) {
+                    error[0] = e;
+                }
+            }
+        });
+
+        if (error[0] != null)
+            throw error[0];
+    }
+}
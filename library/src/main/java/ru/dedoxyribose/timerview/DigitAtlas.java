@@ -0,0 +1,177 @@
+/**
+ *
+ * Copyright 2017 Dedoxyribose
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+
+
+package ru.dedoxyribose.timerview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * The pre-rasterized digits and separators of a time pattern, drawn by blitting instead of shaping the text.
+ *
+ * The glyphs are rendered once into an ALPHA_8 bitmap, so they are tinted by the color of the paint they're
+ * drawn with. All the digits share the same advance, so the width of the text doesn't change with the time.
+ */
+class DigitAtlas {
+
+    private static final String DIGITS = "0123456789";
+
+    /**
+     * The chars the atlas contains
+     */
+    private final char[] mGlyphs;
+
+    /**
+     * The advance of every glyph
+     */
+    private final float[] mAdvances;
+
+    /**
+     * The left edge and the width of every glyph's cell in the bitmap
+     */
+    private final int[] mCellLefts;
+    private final int[] mCellWidths;
+
+    /**
+     * The space around every glyph, so that the parts of the glyphs sticking out of the advance aren't cut
+     */
+    private final int mCellPadding;
+
+    private final int mCellHeight;
+    private final float mAscent;
+
+    private final float mTextSize;
+
+    private final Bitmap mBitmap;
+
+    private final Rect mSrcRect = new Rect();
+    private final RectF mDstRect = new RectF();
+
+    /**
+     * Render the atlas
+     *
+     * @param textPaint  the paint the text would be drawn with
+     * @param separators the non-digit chars of the time pattern
+     */
+    DigitAtlas(Paint textPaint, String separators) {
+
+        Paint paint = new Paint(textPaint);
+        paint.setColor(0xFF000000);
+
+        mTextSize = textPaint.getTextSize();
+        mAscent = paint.ascent();
+
+        String glyphs = DIGITS + separators;
+        mGlyphs = glyphs.toCharArray();
+        mAdvances = new float[mGlyphs.length];
+        mCellLefts = new int[mGlyphs.length];
+        mCellWidths = new int[mGlyphs.length];
+
+        float digitAdvance = 0;
+        for (int i = 0; i < DIGITS.length(); i++)
+            digitAdvance = Math.max(digitAdvance, paint.measureText(mGlyphs, i, 1));
+
+        mCellPadding = (int) Math.ceil(mTextSize * 0.15f) + 1;
+        mCellHeight = (int) Math.ceil(paint.descent() - mAscent) + 2 * mCellPadding;
+
+        int bitmapWidth = 0;
+        for (int i = 0; i < mGlyphs.length; i++) {
+            mAdvances[i] = i < DIGITS.length() ? digitAdvance : paint.measureText(mGlyphs, i, 1);
+            mCellLefts[i] = bitmapWidth;
+            mCellWidths[i] = (int) Math.ceil(mAdvances[i]) + 2 * mCellPadding;
+            bitmapWidth += mCellWidths[i];
+        }
+
+        mBitmap = Bitmap.createBitmap(Math.max(bitmapWidth, 1), Math.max(mCellHeight, 1), Bitmap.Config.ALPHA_8);
+        Canvas canvas = new Canvas(mBitmap);
+
+        for (int i = 0; i < mGlyphs.length; i++) {
+            // center the glyph within its advance
+            float glyphWidth = paint.measureText(mGlyphs, i, 1);
+            float x = mCellLefts[i] + mCellPadding + (mAdvances[i] - glyphWidth) / 2;
+            canvas.drawText(mGlyphs, i, 1, x, mCellPadding - mAscent, paint);
+        }
+    }
+
+    /**
+     * Whether the atlas was rendered for the text size of the paint
+     *
+     */
+    boolean matches(Paint textPaint) {
+        return textPaint.getTextSize() == mTextSize;
+    }
+
+    /**
+     * Whether all the chars are present in the atlas
+     *
+     */
+    boolean canDraw(char[] chars, int length) {
+        for (int i = 0; i < length; i++) {
+            if (indexOf(chars[i]) == -1)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get the width of the text drawn from the atlas
+     *
+     */
+    float measure(char[] chars, int length) {
+        float width = 0;
+        for (int i = 0; i < length; i++)
+            width += mAdvances[indexOf(chars[i])];
+        return width;
+    }
+
+    /**
+     * Draw the text from the atlas. All the chars must be present in it
+     *
+     * @param x        the left edge of the text
+     * @param baseline the baseline of the text
+     * @param paint    the paint to tint the glyphs with
+     */
+    void draw(Canvas canvas, char[] chars, int length, float x, float baseline, Paint paint) {
+        int top = Math.round(baseline + mAscent) - mCellPadding;
+
+        float penX = x;
+        for (int i = 0; i < length; i++) {
+            int index = indexOf(chars[i]);
+
+            int left = Math.round(penX) - mCellPadding;
+            mSrcRect.set(mCellLefts[index], 0, mCellLefts[index] + mCellWidths[index], mCellHeight);
+            mDstRect.set(left, top, left + mCellWidths[index], top + mCellHeight);
+            canvas.drawBitmap(mBitmap, mSrcRect, mDstRect, paint);
+
+            penX += mAdvances[index];
+        }
+    }
+
+    /**
+     * Free the bitmap. The atlas can't be used afterwards
+     */
+    void release() {
+        mBitmap.recycle();
+    }
+
+    private int indexOf(char c) {
+        for (int i = 0; i < mGlyphs.length; i++) {
+            if (mGlyphs[i] == c)
+                return i;
+        }
+        return -1;
+    }
+}
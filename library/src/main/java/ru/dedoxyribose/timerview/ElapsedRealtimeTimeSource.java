@@ -0,0 +1,35 @@
+/**
+ *
+ * Copyright 2017 Dedoxyribose
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+
+
+package ru.dedoxyribose.timerview;
+
+import android.os.Build;
+import android.os.SystemClock;
+
+/**
+ * The default TimeSource, counting the time since boot including deep sleep
+ */
+class ElapsedRealtimeTimeSource implements TimeSource {
+
+    static final ElapsedRealtimeTimeSource INSTANCE = new ElapsedRealtimeTimeSource();
+
+    private ElapsedRealtimeTimeSource() {
+    }
+
+    @Override
+    public long nanoTime() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1)
+            return SystemClock.elapsedRealtimeNanos();
+        return SystemClock.elapsedRealtime() * 1000000L;
+    }
+}
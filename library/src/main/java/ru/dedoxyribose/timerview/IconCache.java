@@ -0,0 +1,131 @@
+/**
+ *
+ * Copyright 2017 Dedoxyribose
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+
+
+package ru.dedoxyribose.timerview;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.DrawableRes;
+import android.support.annotation.Nullable;
+import android.support.v7.content.res.AppCompatResources;
+import android.util.LruCache;
+
+/**
+ * The icons set by resource id, rasterized at the size they're drawn with and cached, so the timers using
+ * the same icon at the same size share one bitmap.
+ *
+ * Any drawable resource works, including vectors. The tint is baked into the bitmap, as it's a part of the key anyway.
+ */
+final class IconCache {
+
+    private static final int MAX_SIZE_BYTES = 4 * 1024 * 1024;
+
+    private static final LruCache<Key, BitmapDrawable> sCache = new LruCache<Key, BitmapDrawable>(MAX_SIZE_BYTES) {
+        @Override
+        protected int sizeOf(Key key, BitmapDrawable value) {
+            return value.getBitmap().getByteCount();
+        }
+    };
+
+    private IconCache() {
+    }
+
+    /**
+     * Get a drawable of the icon. The drawables of the same icon share the bitmap
+     *
+     * @param context the context to load the resource with
+     * @param resId   the drawable resource of the icon
+     * @param maxSize the max width and height of the icon, it's drawn at its intrinsic size unless it's bigger
+     * @param tint    the color to tint the icon with, or null to keep its own colors
+     */
+    static Drawable get(Context context, @DrawableRes int resId, int maxSize, @Nullable Integer tint) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("maxSize should be greater than 0.");
+
+        Key key = new Key(resId, maxSize, tint);
+        BitmapDrawable icon = sCache.get(key);
+        if (icon == null) {
+            icon = rasterize(context, resId, maxSize, tint);
+            sCache.put(key, icon);
+        }
+
+        // the state is shared, but the bounds and the filter set on the new drawable are its own
+        return icon.getConstantState().newDrawable(context.getResources());
+    }
+
+    private static BitmapDrawable rasterize(Context context, @DrawableRes int resId, int maxSize, @Nullable Integer tint) {
+
+        Drawable source = AppCompatResources.getDrawable(context, resId);
+        if (source == null)
+            throw new IllegalArgumentException("Can't load the drawable " + resId);
+
+        int width = source.getIntrinsicWidth() > 0 ? source.getIntrinsicWidth() : maxSize;
+        int height = source.getIntrinsicHeight() > 0 ? source.getIntrinsicHeight() : maxSize;
+
+        float scale = Math.min(1f, Math.min(maxSize * 1f / width, maxSize * 1f / height));
+        width = Math.max(1, Math.round(width * scale));
+        height = Math.max(1, Math.round(height * scale));
+
+        if (tint == null && scale == 1f && source instanceof BitmapDrawable) {
+            Bitmap bitmap = ((BitmapDrawable) source).getBitmap();
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height)
+                return (BitmapDrawable) source;
+        }
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+
+        source = source.mutate();
+        source.setBounds(0, 0, width, height);
+        if (tint != null)
+            source.setColorFilter(new PorterDuffColorFilter(tint, PorterDuff.Mode.SRC_ATOP));
+        source.draw(canvas);
+
+        return new BitmapDrawable(context.getResources(), bitmap);
+    }
+
+    private static final class Key {
+        final int resId;
+        final int maxSize;
+        final boolean hasTint;
+        final int tint;
+
+        Key(int resId, int maxSize, @Nullable Integer tint) {
+            this.resId = resId;
+            this.maxSize = maxSize;
+            this.hasTint = tint != null;
+            this.tint = tint != null ? tint : 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key key = (Key) o;
+            return resId == key.resId && maxSize == key.maxSize && hasTint == key.hasTint && tint == key.tint;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = resId;
+            result = 31 * result + maxSize;
+            result = 31 * result + (hasTint ? tint : 1);
+            return result;
+        }
+    }
+}
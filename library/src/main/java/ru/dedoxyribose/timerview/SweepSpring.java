@@ -0,0 +1,118 @@
+/**
+ *
+ * Copyright 2017 Dedoxyribose
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+
+
+package ru.dedoxyribose.timerview;
+
+/**
+ * A critically damped spring moving a value towards its target: the fastest motion which never overshoots.
+ *
+ * It's stepped with the closed-form solution, so it stays stable for any frame interval, and it comes
+ * to rest by itself once it's close enough to the target.
+ */
+class SweepSpring {
+
+    /**
+     * The natural frequency, in radians per second. The value covers ~95% of the way in 0.24s
+     */
+    static final float DEFAULT_FREQUENCY = 20f;
+
+    /**
+     * The distance to the target below which the spring is considered at rest (if it's also slow enough)
+     */
+    static final float DEFAULT_REST_THRESHOLD = 0.05f;
+
+    private final float mFrequency;
+    private final float mRestThreshold;
+
+    private float mPosition;
+    private float mVelocity;
+    private float mTarget;
+    private boolean mIsMoving;
+
+    SweepSpring() {
+        this(DEFAULT_FREQUENCY, DEFAULT_REST_THRESHOLD);
+    }
+
+    SweepSpring(float frequency, float restThreshold) {
+        if (frequency <= 0)
+            throw new IllegalArgumentException("frequency should be greater than 0.");
+        mFrequency = frequency;
+        mRestThreshold = restThreshold;
+    }
+
+    /**
+     * Get the current value
+     *
+     */
+    float getPosition() {
+        return mPosition;
+    }
+
+    /**
+     * Get the value the spring is moving to
+     *
+     */
+    float getTarget() {
+        return mTarget;
+    }
+
+    /**
+     * Whether the spring hasn't come to rest yet
+     *
+     */
+    boolean isMoving() {
+        return mIsMoving;
+    }
+
+    /**
+     * Start moving towards the new target, keeping the current position and velocity
+     *
+     * @param target the new target value
+     */
+    void setTarget(float target) {
+        mTarget = target;
+        mIsMoving = mPosition != target || mVelocity != 0;
+    }
+
+    /**
+     * Jump to the value and stay there
+     *
+     * @param position the new value
+     */
+    void snapTo(float position) {
+        mPosition = position;
+        mTarget = position;
+        mVelocity = 0;
+        mIsMoving = false;
+    }
+
+    /**
+     * Advance the motion
+     *
+     * @param seconds the time elapsed since the previous step
+     */
+    void step(float seconds) {
+        if (!mIsMoving || seconds <= 0)
+            return;
+
+        float offset = mPosition - mTarget;
+        float c2 = mVelocity + mFrequency * offset;
+        float decay = (float) Math.exp(-mFrequency * seconds);
+
+        mPosition = mTarget + (offset + c2 * seconds) * decay;
+        mVelocity = (c2 - mFrequency * (offset + c2 * seconds)) * decay;
+
+        if (Math.abs(mPosition - mTarget) < mRestThreshold && Math.abs(mVelocity) < mRestThreshold * mFrequency)
+            snapTo(mTarget);
+    }
+}
@@ -0,0 +1,384 @@
+/**
+ *
+ * Copyright 2017 Dedoxyribose
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package ru.dedoxyribose.timerview;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Formats time values according to a SimpleDateFormat pattern (in UTC) without allocating.
+ *
+ * The pattern is compiled once. Numeric fields (H, k, K, h, m, s, S, d, D) and literal text are written
+ * straight into a reusable char buffer. Patterns with any other field fall back to a single
+ * cached SimpleDateFormat instance, so the output is always the same as SimpleDateFormat's.
+ *
+ * For the timers longer than a day there is one extra field SimpleDateFormat doesn't have: 'n', the number
+ * of whole days elapsed (e.g. "n'd' HH:mm:ss" gives "15d 03:20:00"). It can't be combined with the fields
+ * requiring the fallback.
+ */
+class TimeFormatter {
+
+    private static final int TYPE_LITERAL = 0;
+    private static final int TYPE_HOUR_OF_DAY = 1;    // H, 0-23
+    private static final int TYPE_HOUR_OF_DAY_1 = 2;  // k, 1-24
+    private static final int TYPE_HOUR_AM_PM = 3;     // K, 0-11
+    private static final int TYPE_HOUR_AM_PM_1 = 4;   // h, 1-12
+    private static final int TYPE_MINUTE = 5;         // m
+    private static final int TYPE_SECOND = 6;         // s
+    private static final int TYPE_MILLISECOND = 7;    // S
+    private static final int TYPE_DAY_OF_MONTH = 8;   // d
+    private static final int TYPE_DAY_OF_YEAR = 9;    // D
+    private static final int TYPE_ELAPSED_DAYS = 10;  // n, not a SimpleDateFormat field
+
+    private static final long MILLIS_PER_SECOND = 1000;
+    private static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+    private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+    /**
+     * The max amount of digits a numeric field can produce
+     */
+    private static final int MAX_FIELD_DIGITS = 19;
+
+    private final String mPattern;
+
+    /**
+     * The interval the formatted text can change at most once per
+     */
+    private final long mResolution;
+
+    /**
+     * The type of every compiled token
+     */
+    private int[] mTokenTypes;
+
+    /**
+     * The min amount of digits for field tokens, or the character itself for literal tokens
+     */
+    private int[] mTokenArgs;
+
+    private int mTokenCount;
+
+    /**
+     * The formatter used for patterns containing fields this class can't handle itself
+     */
+    private SimpleDateFormat mFallbackFormat;
+    private Date mFallbackDate;
+
+    /**
+     * The buffer holding the result of the last format() call
+     */
+    private char[] mChars;
+
+    TimeFormatter(String pattern) {
+        mPattern = pattern;
+        mResolution = resolve(pattern);
+        compile(pattern);
+    }
+
+    /**
+     * Get the pattern this formatter was compiled from
+     *
+     */
+    String getPattern() {
+        return mPattern;
+    }
+
+    /**
+     * Get the interval in milliseconds the formatted text changes at most once per, e.g. 1000 for "mm:ss".
+     * The text may only change when the time crosses a multiple of it
+     *
+     */
+    long getResolution() {
+        return mResolution;
+    }
+
+    /**
+     * Format the given time
+     *
+     * @param time the time in milliseconds
+     * @return the amount of chars written into the buffer returned by {@link #getChars()}
+     */
+    int format(long time) {
+
+        if (mFallbackFormat != null) {
+            mFallbackDate.setTime(time);
+            String formatted = mFallbackFormat.format(mFallbackDate);
+            if (formatted.length() > mChars.length)
+                mChars = new char[formatted.length()];
+            formatted.getChars(0, formatted.length(), mChars, 0);
+            return formatted.length();
+        }
+
+        long days = floorDiv(time, MILLIS_PER_DAY);
+        long millisOfDay = time - days * MILLIS_PER_DAY;
+
+        int length = 0;
+        for (int i = 0; i < mTokenCount; i++) {
+            int arg = mTokenArgs[i];
+            switch (mTokenTypes[i]) {
+                case TYPE_LITERAL:
+                    mChars[length++] = (char) arg;
+                    break;
+                case TYPE_HOUR_OF_DAY:
+                    length = writeNumber(millisOfDay / MILLIS_PER_HOUR, arg, length);
+                    break;
+                case TYPE_HOUR_OF_DAY_1: {
+                    long hour = millisOfDay / MILLIS_PER_HOUR;
+                    length = writeNumber(hour == 0 ? 24 : hour, arg, length);
+                    break;
+                }
+                case TYPE_HOUR_AM_PM:
+                    length = writeNumber(millisOfDay / MILLIS_PER_HOUR % 12, arg, length);
+                    break;
+                case TYPE_HOUR_AM_PM_1: {
+                    long hour = millisOfDay / MILLIS_PER_HOUR % 12;
+                    length = writeNumber(hour == 0 ? 12 : hour, arg, length);
+                    break;
+                }
+                case TYPE_MINUTE:
+                    length = writeNumber(millisOfDay / MILLIS_PER_MINUTE % 60, arg, length);
+                    break;
+                case TYPE_SECOND:
+                    length = writeNumber(millisOfDay / MILLIS_PER_SECOND % 60, arg, length);
+                    break;
+                case TYPE_MILLISECOND:
+                    length = writeNumber(millisOfDay % MILLIS_PER_SECOND, arg, length);
+                    break;
+                case TYPE_DAY_OF_MONTH:
+                    length = writeNumber(dayOfMonth(days), arg, length);
+                    break;
+                case TYPE_DAY_OF_YEAR:
+                    length = writeNumber(dayOfYear(days), arg, length);
+                    break;
+                case TYPE_ELAPSED_DAYS:
+                    length = writeNumber(days, arg, length);
+                    break;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Get the buffer holding the result of the last format() call
+     *
+     */
+    char[] getChars() {
+        return mChars;
+    }
+
+    /**
+     * Format the given time into a new String. Allocates, so it's not meant for the drawing path
+     *
+     * @param time the time in milliseconds
+     */
+    String formatToString(long time) {
+        int length = format(time);
+        return new String(mChars, 0, length);
+    }
+
+    private void compile(String pattern) {
+
+        int patternLength = pattern.length();
+        mTokenTypes = new int[patternLength];
+        mTokenArgs = new int[patternLength];
+        mTokenCount = 0;
+
+        int capacity = 0;
+        boolean inQuote = false;
+
+        int i = 0;
+        while (i < patternLength) {
+            char c = pattern.charAt(i);
+
+            if (c == '\'') {
+                if (i + 1 < patternLength && pattern.charAt(i + 1) == '\'') {
+                    // two single quotes represent a quote, both inside and outside of the quoted text
+                    addToken(TYPE_LITERAL, '\'');
+                    capacity++;
+                    i += 2;
+                } else {
+                    inQuote = !inQuote;
+                    i++;
+                }
+                continue;
+            }
+
+            if (inQuote || !((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))) {
+                addToken(TYPE_LITERAL, c);
+                capacity++;
+                i++;
+                continue;
+            }
+
+            int count = 1;
+            while (i + count < patternLength && pattern.charAt(i + count) == c)
+                count++;
+
+            int type = fieldType(c);
+            if (type == TYPE_LITERAL) {
+                initFallback(pattern);
+                return;
+            }
+
+            addToken(type, count);
+            // the digits and a possible minus sign
+            capacity += Math.max(count, MAX_FIELD_DIGITS) + 1;
+            i += count;
+        }
+
+        if (inQuote) {
+            // let SimpleDateFormat report the malformed pattern the usual way
+            initFallback(pattern);
+            return;
+        }
+
+        mChars = new char[capacity];
+    }
+
+    private static long resolve(String pattern) {
+
+        long resolution = Long.MAX_VALUE;
+        boolean inQuote = false;
+
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+
+            if (c == '\'') {
+                inQuote = !inQuote;
+                continue;
+            }
+
+            if (!inQuote && ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')))
+                resolution = Math.min(resolution, fieldResolution(c));
+        }
+        return resolution;
+    }
+
+    private static long fieldResolution(char c) {
+        switch (c) {
+            case 'S': return 1;
+            case 's': return MILLIS_PER_SECOND;
+            case 'm': return MILLIS_PER_MINUTE;
+            case 'H': case 'k': case 'K': case 'h': return MILLIS_PER_HOUR;
+            case 'd': case 'D': case 'n': return MILLIS_PER_DAY;
+            // the other fields (am/pm, day of week, month...) never change more often than hourly
+            default: return MILLIS_PER_HOUR;
+        }
+    }
+
+    private void addToken(int type, int arg) {
+        mTokenTypes[mTokenCount] = type;
+        mTokenArgs[mTokenCount] = arg;
+        mTokenCount++;
+    }
+
+    private void initFallback(String pattern) {
+        mTokenCount = 0;
+        mFallbackFormat = new SimpleDateFormat(pattern);
+        mFallbackFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        mFallbackDate = new Date();
+        mChars = new char[pattern.length() * 2];
+    }
+
+    private static int fieldType(char c) {
+        switch (c) {
+            case 'H': return TYPE_HOUR_OF_DAY;
+            case 'k': return TYPE_HOUR_OF_DAY_1;
+            case 'K': return TYPE_HOUR_AM_PM;
+            case 'h': return TYPE_HOUR_AM_PM_1;
+            case 'm': return TYPE_MINUTE;
+            case 's': return TYPE_SECOND;
+            case 'S': return TYPE_MILLISECOND;
+            case 'd': return TYPE_DAY_OF_MONTH;
+            case 'D': return TYPE_DAY_OF_YEAR;
+            case 'n': return TYPE_ELAPSED_DAYS;
+            default: return TYPE_LITERAL;
+        }
+    }
+
+    /**
+     * Write the number zero-padded to the min amount of digits
+     *
+     * @return the new length of the buffer contents
+     */
+    private int writeNumber(long value, int minDigits, int offset) {
+
+        if (value < 0) {
+            // only the elapsed days can be negative, and they never reach Long.MIN_VALUE
+            mChars[offset++] = '-';
+            value = -value;
+        }
+
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10)
+            digits++;
+
+        for (int i = digits; i < minDigits; i++)
+            mChars[offset++] = '0';
+
+        int end = offset + digits;
+        for (int i = end - 1; i >= offset; i--) {
+            mChars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0))
+            q--;
+        return q;
+    }
+
+    /**
+     * Get the day of month (1-based) for the given amount of days since 1970-01-01
+     */
+    private static long dayOfMonth(long epochDay) {
+        long z = epochDay + 719468;
+        long era = floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        return doy - (153 * mp + 2) / 5 + 1;
+    }
+
+    /**
+     * Get the day of year (1-based) for the given amount of days since 1970-01-01
+     */
+    private static long dayOfYear(long epochDay) {
+        long z = epochDay + 719468;
+        long era = floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long year = yoe + era * 400 + (doy >= 306 ? 1 : 0);
+
+        return epochDay - firstDayOfYear(year) + 1;
+    }
+
+    /**
+     * Get the amount of days since 1970-01-01 of January 1st of the given year
+     */
+    private static long firstDayOfYear(long year) {
+        // January is counted as the 11th month of the previous March-based year
+        long y = year - 1;
+        long era = floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + 306;
+        return era * 146097 + doe - 719468;
+    }
+}
@@ -0,0 +1,29 @@
+/**
+ *
+ * Copyright 2017 Dedoxyribose
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+
+
+package ru.dedoxyribose.timerview;
+
+/**
+ * The monotonic clock the timer measures the elapsed time with.
+ *
+ * The default one is based on SystemClock.elapsedRealtime, so the timer is neither affected by wall clock
+ * changes nor stopped by deep sleep. A custom source can be set with TimerView.setTimeSource (e.g. in tests).
+ */
+public interface TimeSource {
+
+    /**
+     * Get the current time of the clock in nanoseconds. Only the difference between two values is meaningful
+     *
+     */
+    long nanoTime();
+}
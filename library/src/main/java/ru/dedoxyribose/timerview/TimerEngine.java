@@ -0,0 +1,675 @@
+/**
+ *
+ * Copyright 2017 Dedoxyribose
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+
+
+package ru.dedoxyribose.timerview;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The state of a timer without any rendering: play/stop, the time arithmetic, the manual time changes
+ * and the listener dispatch.
+ *
+ * TimerView draws one of these, but it has no Android dependencies, so it can also be used on its own
+ * (e.g. in a service or in JVM tests). The engine doesn't tick by itself: call tick() whenever the
+ * current time should be brought up to date.
+ *
+ * The state is published as immutable TimerState snapshots with compare-and-set, so the commands (play, stop,
+ * tick, setCurTime, setFullTime) can be issued from any thread without locks. The listener is notified on the
+ * thread whose command has made the change. The touch tracking methods are expected to be called from one thread.
+ *
+ * The snapshots can also be observed with subscribe(). The subscriptions are conflated: a slow observer is never
+ * queued up, it just gets the latest state when it's ready for the next one.
+ */
+public class TimerEngine {
+
+    public static final int INVALID_VALUE = -1;
+
+    /**
+     * The current state, replaced as a whole on every change
+     */
+    private final AtomicReference<TimerState> mState;
+
+    /**
+     * The clock the elapsed time is measured with
+     */
+    private volatile TimeSource mTimeSource;
+
+    /**
+     * The time pointed by the previous touch sample of the current touch session, or INVALID_VALUE
+     * if there was none yet
+     */
+    private long mTouchLastTime = INVALID_VALUE;
+
+    /**
+     * The time pointed by the touch, unwrapped: it keeps growing past the full time and keeps falling
+     * below zero as the finger goes around over 12 o'clock
+     */
+    private long mTouchUnwrappedTime = 0;
+
+    /**
+     * The time before current touch session started
+     */
+    private long mTimeBeforeTouch = 0;
+
+    /**
+     * Indicates whether the user is allowed to move the time forward manually
+     */
+    private volatile boolean mAllowMoveForward = true;
+
+    /**
+     * Indicates whether the user is allowed to move the time backward manually
+     */
+    private volatile boolean mAllowMoveBackward = true;
+
+    private volatile Listener mListener;
+
+    private static final StateSubscription[] NO_SUBSCRIPTIONS = new StateSubscription[0];
+
+    /**
+     * The state observers, the array is replaced on every (un)subscription
+     */
+    private volatile StateSubscription[] mSubscriptions = NO_SUBSCRIPTIONS;
+
+    public TimerEngine(TimeSource timeSource) {
+        mTimeSource = timeSource;
+        mState = new AtomicReference<>(new TimerState(0, 60000, timeSource.nanoTime(), 0, false, false));
+    }
+
+    /**
+     * Get the current state snapshot. Its values are consistent with each other, unlike the ones of
+     * several getter calls in a row while another thread changes the engine
+     *
+     */
+    public TimerState getState() {
+        return mState.get();
+    }
+
+    /**
+     * Replace the state if it's still the expected one, and signal the subscriptions
+     *
+     * @return false if the state has been changed by another thread meanwhile
+     */
+    private boolean publish(TimerState expect, TimerState update) {
+        if (!mState.compareAndSet(expect, update))
+            return false;
+
+        StateSubscription[] subscriptions = mSubscriptions;
+        for (int i = 0; i < subscriptions.length; i++)
+            subscriptions[i].signal();
+        return true;
+    }
+
+    /**
+     * Start playing. The time will advance from the current value on the next ticks. Does nothing if already playing
+     */
+    public void play() {
+        while (true) {
+            TimerState state = mState.get();
+            if (state.isPlaying())
+                return;
+
+            long time = state.getCurTime();
+            if (publish(state, new TimerState(time, state.getFullTime(), mTimeSource.nanoTime(), time,
+                    true, state.isTrackingTouch()))) {
+                Listener listener = mListener;
+                if (listener != null)
+                    listener.onPlayStarted(this);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stop playing. The current time is brought up to date first, so it may finish the timer instead
+     */
+    public void stop() {
+        while (true) {
+            TimerState state = mState.get();
+            if (!state.isPlaying())
+                return;
+
+            long time = state.getTimeAt(mTimeSource.nanoTime());
+            if (time >= state.getFullTime()) {
+                if (finish(state))
+                    return;
+                continue;
+            }
+
+            if (publish(state, new TimerState(time, state.getFullTime(), state.getAnchorNanos(),
+                    state.getAnchorTime(), false, state.isTrackingTouch()))) {
+                Listener listener = mListener;
+                if (listener != null) {
+                    if (time != state.getCurTime())
+                        listener.onTimeChanged(this, time, false);
+                    listener.onPlayStopped(this);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Bring the current time up to date with the time source, finishing the timer if its time is over
+     */
+    public void tick() {
+        while (true) {
+            TimerState state = mState.get();
+            if (!state.isPlaying() || state.isTrackingTouch())
+                return;
+
+            long time = state.getTimeAt(mTimeSource.nanoTime());
+
+            if (time >= state.getFullTime()) {
+                if (finish(state))
+                    return;
+            } else {
+                if (time == state.getCurTime())
+                    return;
+
+                if (publish(state, new TimerState(time, state.getFullTime(), state.getAnchorNanos(),
+                        state.getAnchorTime(), true, false))) {
+                    Listener listener = mListener;
+                    if (listener != null)
+                        listener.onTimeChanged(this, time, false);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop at the full time and notify the finish, unless the state has been changed by another thread meanwhile
+     *
+     * @return false if the state has been changed and has to be read again
+     */
+    private boolean finish(TimerState state) {
+        long fullTime = state.getFullTime();
+        if (!publish(state, new TimerState(fullTime, fullTime, state.getAnchorNanos(),
+                state.getAnchorTime(), false, state.isTrackingTouch())))
+            return false;
+
+        // only the thread which has published the finished state gets here, so the finish is notified once
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onTimeChanged(this, fullTime, false);
+            listener.onPlayFinished(this);
+        }
+        return true;
+    }
+
+    /**
+     * Notify that the user started to change the time manually
+     */
+    public void startTrackingTouch() {
+        TimerState state;
+        do {
+            state = mState.get();
+        } while (!publish(state, new TimerState(state.getCurTime(), state.getFullTime(),
+                state.getAnchorNanos(), state.getAnchorTime(), state.isPlaying(), true)));
+
+        mTouchLastTime = INVALID_VALUE;
+        mTimeBeforeTouch = state.getCurTime();
+
+        Listener listener = mListener;
+        if (listener != null)
+            listener.onStartTrackingTouch(this);
+    }
+
+    /**
+     * Set the time pointed by the user. Applies the allowed directions and the wrap-around over 12 o'clock
+     *
+     * The samples are expected to be continuous: a move between two samples is always taken as the shorter way
+     * around the circle, so crossing 12 o'clock clockwise pins the time at the full time and crossing it
+     * counterclockwise pins it at zero, until the finger comes back.
+     *
+     * @param time the time pointed by the user in milliseconds, from 0 to the full time
+     */
+    public void updateFromUser(long time) {
+        if (time == INVALID_VALUE)
+            return;
+
+        long fullTime = mState.get().getFullTime();
+
+        if (mTouchLastTime == INVALID_VALUE) {
+            mTouchUnwrappedTime = time;
+        } else {
+            long delta = time - mTouchLastTime;
+            long half = fullTime / 2;
+
+            if (delta > half)
+                delta -= fullTime;
+            else if (delta < -half)
+                delta += fullTime;
+
+            mTouchUnwrappedTime += delta;
+        }
+        mTouchLastTime = time;
+
+        long progress = Math.max(0, Math.min(fullTime, mTouchUnwrappedTime));
+
+        if ((progress > mTimeBeforeTouch && !mAllowMoveForward) ||
+                (progress < mTimeBeforeTouch && !mAllowMoveBackward))
+            return;
+
+        while (true) {
+            TimerState state = mState.get();
+            if (progress == state.getCurTime())
+                return;
+
+            long userTime = Math.min(progress, state.getFullTime());
+            if (publish(state, new TimerState(userTime, state.getFullTime(), state.getAnchorNanos(),
+                    state.getAnchorTime(), state.isPlaying(), state.isTrackingTouch()))) {
+                Listener listener = mListener;
+                if (listener != null)
+                    listener.onTimeChanged(this, userTime, true);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Notify that the user finished to change the time manually. The time will advance from the chosen value
+     */
+    public void stopTrackingTouch() {
+        TimerState state;
+        do {
+            state = mState.get();
+        } while (!publish(state, new TimerState(state.getCurTime(), state.getFullTime(),
+                mTimeSource.nanoTime(), state.getCurTime(), state.isPlaying(), false)));
+
+        Listener listener = mListener;
+        if (listener != null)
+            listener.onStopTrackingTouch(this);
+    }
+
+    /**
+     * Get the instant of the time source (in nanoseconds) at which the time reaches the full time
+     * if the timer keeps playing
+     *
+     */
+    public long getDeadlineNanos() {
+        return mState.get().getDeadlineNanos();
+    }
+
+    /**
+     * Get how long ago (in nanoseconds) the time has reached the full time, negative if it hasn't yet
+     *
+     */
+    public long getOvershootNanos() {
+        return mTimeSource.nanoTime() - getDeadlineNanos();
+    }
+
+    /**
+     * Convert the angle from 12 o'clock to the time value
+     *
+     * @param angle the angle in degrees, clockwise
+     */
+    public long convertAngleToTime(double angle) {
+        // multiply first and in double, so that neither the precision is lost nor the value overflows
+        return Math.round(angle * mState.get().getFullTime() / 360.0);
+    }
+
+    /**
+     * Convert the time value to the sweep angle of the progress arc, in degrees
+     *
+     * @param time the time in milliseconds
+     */
+    public float convertTimeToSweep(long time) {
+        return (float) (time * 360.0 / mState.get().getFullTime());
+    }
+
+    /**
+     * Convert the point to the clockwise angle from 12 o'clock, in degrees
+     *
+     * @param x the x coordinate relative to the center of the circle
+     * @param y the y coordinate relative to the center of the circle (pointing down)
+     */
+    public static double convertPointToAngle(float x, float y) {
+        double angle = Math.toDegrees(Math.atan2(y, x) + (Math.PI / 2));
+        angle = (angle < 0) ? (angle + 360) : angle;
+        return angle;
+    }
+
+    /**
+     * Change the current time value
+     *
+     * @param curTime the new value of time in milliseconds
+     */
+    public void setCurTime(long curTime) {
+        while (true) {
+            TimerState state = mState.get();
+            long time = Math.min(curTime, state.getFullTime());
+
+            if (publish(state, new TimerState(time, state.getFullTime(), mTimeSource.nanoTime(), time,
+                    state.isPlaying(), state.isTrackingTouch()))) {
+                Listener listener = mListener;
+                if (listener != null)
+                    listener.onTimeChanged(this, time, false);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get the current time value in milliseconds, as of the last tick
+     *
+     */
+    public long getCurTime() {
+        return mState.get().getCurTime();
+    }
+
+    /**
+     * Get the current time value in milliseconds at this instant, counted from the play anchor rather than
+     * the last tick, so it keeps advancing while nothing ticks the engine
+     *
+     */
+    public long getCurTimeNow() {
+        return getStateNow().getCurTime();
+    }
+
+    /**
+     * Get the current state snapshot with the time brought up to this instant, without publishing it
+     *
+     */
+    public TimerState getStateNow() {
+        return mState.get().getStateAt(mTimeSource.nanoTime());
+    }
+
+    /**
+     * Set the time value representing the whole cycle of the timer (the max value)
+     *
+     * @param fullTime the new fulltime value in milliseconds
+     */
+    public void setFullTime(long fullTime) {
+        if (fullTime <= 0)
+            throw new IllegalArgumentException("FullTime should be greater than 0.");
+
+        while (true) {
+            TimerState state = mState.get();
+            long time = Math.min(state.getCurTime(), fullTime);
+
+            if (publish(state, new TimerState(time, fullTime, state.getAnchorNanos(), state.getAnchorTime(),
+                    state.isPlaying(), state.isTrackingTouch()))) {
+                Listener listener = mListener;
+                if (listener != null)
+                    listener.onTimeChanged(this, time, false);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get the time value representing the whole cycle of the timer (the max value) in milliseconds
+     *
+     */
+    public long getFullTime() {
+        return mState.get().getFullTime();
+    }
+
+    /**
+     * Whether the timer is playing at the moment
+     *
+     */
+    public boolean isPlaying() {
+        return mState.get().isPlaying();
+    }
+
+    /**
+     * Whether the user is changing the time manually at the moment
+     *
+     */
+    public boolean isTrackingTouch() {
+        return mState.get().isTrackingTouch();
+    }
+
+    /**
+     * Whether the user is allowed to manually move the timer forward
+     *
+     */
+    public boolean isAllowMoveForward() {
+        return mAllowMoveForward;
+    }
+
+    /**
+     * Specify whether the user is allowed to manually move the timer forward
+     *
+     * @param allowMoveForward whether the user is allowed to manually move the timer forward
+     */
+    public void setAllowMoveForward(boolean allowMoveForward) {
+        mAllowMoveForward = allowMoveForward;
+    }
+
+    /**
+     * Whether the user is allowed to manually move the timer backward
+     *
+     */
+    public boolean isAllowMoveBackward() {
+        return mAllowMoveBackward;
+    }
+
+    /**
+     * Specify whether the user is allowed to manually move the timer backward
+     *
+     * @param allowMoveBackward whether the user is allowed to manually move the timer backward
+     */
+    public void setAllowMoveBackward(boolean allowMoveBackward) {
+        mAllowMoveBackward = allowMoveBackward;
+    }
+
+    /**
+     * Set the clock the elapsed time is measured with
+     *
+     * @param timeSource the new time source
+     */
+    public void setTimeSource(TimeSource timeSource) {
+        mTimeSource = timeSource;
+
+        TimerState state;
+        do {
+            state = mState.get();
+        } while (!publish(state, new TimerState(state.getCurTime(), state.getFullTime(),
+                timeSource.nanoTime(), state.getCurTime(), state.isPlaying(), state.isTrackingTouch())));
+    }
+
+    /**
+     * Set the listener to the events of the timer
+     *
+     */
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Observe the state snapshots. The observer gets the current state right away, and then the latest state
+     * after the changes, one call at a time. The changes made while a call is in progress or pending are conflated
+     * into a single call with the latest state
+     *
+     * @param executor the executor the observer is called on
+     */
+    public Subscription subscribe(StateObserver observer, Executor executor) {
+        if (observer == null || executor == null)
+            throw new IllegalArgumentException("The observer and the executor must not be null");
+
+        StateSubscription subscription = new StateSubscription(observer, executor);
+
+        synchronized (this) {
+            StateSubscription[] subscriptions = new StateSubscription[mSubscriptions.length + 1];
+            System.arraycopy(mSubscriptions, 0, subscriptions, 0, mSubscriptions.length);
+            subscriptions[mSubscriptions.length] = subscription;
+            mSubscriptions = subscriptions;
+        }
+
+        subscription.signal();
+        return subscription;
+    }
+
+    private synchronized void unsubscribe(StateSubscription subscription) {
+        int index = -1;
+        for (int i = 0; i < mSubscriptions.length; i++) {
+            if (mSubscriptions[i] == subscription) {
+                index = i;
+                break;
+            }
+        }
+        if (index == -1)
+            return;
+
+        if (mSubscriptions.length == 1) {
+            mSubscriptions = NO_SUBSCRIPTIONS;
+            return;
+        }
+
+        StateSubscription[] subscriptions = new StateSubscription[mSubscriptions.length - 1];
+        System.arraycopy(mSubscriptions, 0, subscriptions, 0, index);
+        System.arraycopy(mSubscriptions, index + 1, subscriptions, index, subscriptions.length - index);
+        mSubscriptions = subscriptions;
+    }
+
+    /**
+     * A subscription to the state snapshots, delivering the latest one whenever it's signalled.
+     *
+     * The signals are counted, so that only the first of them submits a delivery, and the delivery submits
+     * another one if more signals have come meanwhile. So there's never more than one delivery in flight,
+     * and it doesn't hold the executor while the state keeps changing.
+     */
+    private final class StateSubscription implements Subscription, Runnable {
+
+        private final StateObserver mObserver;
+        private final Executor mExecutor;
+
+        private final AtomicInteger mSignals = new AtomicInteger();
+        private volatile boolean mIsCancelled = false;
+
+        /**
+         * The state the observer was last called with, only touched by the delivery
+         */
+        private TimerState mDelivered;
+
+        StateSubscription(StateObserver observer, Executor executor) {
+            mObserver = observer;
+            mExecutor = executor;
+        }
+
+        void signal() {
+            if (mSignals.getAndIncrement() == 0)
+                mExecutor.execute(this);
+        }
+
+        @Override
+        public void run() {
+            int signals = mSignals.get();
+
+            try {
+                // the state itself is read here rather than passed by the signal, so it's never an outdated one
+                TimerState state = mState.get();
+                if (!mIsCancelled && state != mDelivered) {
+                    mDelivered = state;
+                    mObserver.onStateChanged(state);
+                }
+            } finally {
+                if (mSignals.addAndGet(-signals) != 0)
+                    mExecutor.execute(this);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            mIsCancelled = true;
+            unsubscribe(this);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return mIsCancelled;
+        }
+    }
+
+    /**
+     * The observer of the state snapshots, see subscribe()
+     */
+    public interface StateObserver {
+
+        /**
+         * Notification that the state has changed
+         *
+         * @param state The latest state
+         */
+        void onStateChanged(TimerState state);
+    }
+
+    /**
+     * The subscription returned by subscribe()
+     */
+    public interface Subscription {
+
+        /**
+         * Stop the notifications. A call in progress completes, but there are no calls after it
+         */
+        void cancel();
+
+        /**
+         * Whether the subscription has been cancelled
+         *
+         */
+        boolean isCancelled();
+    }
+
+    public interface Listener {
+
+        /**
+         * Notification that the current time has changed
+         *
+         * @param engine   The corresponding TimerEngine
+         * @param time     The current time value in milliseconds.
+         * @param fromUser Whether the time was changed manually by user
+         */
+        void onTimeChanged(TimerEngine engine, long time, boolean fromUser);
+
+        /**
+         * Notification user started to manually change the value of the time
+         *
+         * @param engine The corresponding TimerEngine
+         */
+        void onStartTrackingTouch(TimerEngine engine);
+
+        /**
+         * Notification user finished to manually change the value of the time
+         *
+         * @param engine The corresponding TimerEngine
+         */
+        void onStopTrackingTouch(TimerEngine engine);
+
+        /**
+         * Notification that timer has started to play
+         *
+         * @param engine The corresponding TimerEngine
+         */
+        void onPlayStarted(TimerEngine engine);
+
+        /**
+         * Notification that timer has stopped
+         *
+         * @param engine The corresponding TimerEngine
+         */
+        void onPlayStopped(TimerEngine engine);
+
+        /**
+         * Notification that timer has finished
+         *
+         * @param engine The corresponding TimerEngine
+         */
+        void onPlayFinished(TimerEngine engine);
+    }
+}
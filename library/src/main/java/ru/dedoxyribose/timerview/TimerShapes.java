@@ -0,0 +1,150 @@
+/**
+ *
+ * Copyright 2017 Dedoxyribose
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+
+
+package ru.dedoxyribose.timerview;
+
+import android.graphics.Path;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The default play, pause and finish shapes for a given size of the timer.
+ *
+ * The shapes are memoized by the size, so that the views of the same size share them and a relayout
+ * at the same size costs nothing. The paths must never be modified after they're built.
+ */
+final class TimerShapes {
+
+    static final float PLAY_TRIANGLE_SIZE_FACTOR = 2.0f;
+    static final float PAUSE_SHAPE_SIZE_FACTOR = 8.0f;
+    static final float PAUSE_SHAPE_STROKE_WIDTH_FACTOR = 17.0f;
+    static final float PAUSE_SHAPE_WIDTH_TO_HEIGHT_FACTOR = 0.6f;
+    static final float FINISH_SHAPE_SIZE_FACTOR = 2.0f;
+    static final float FINISH_SHAPE_STROKE_WIDTH_FACTOR = 8f;
+
+    private static final int CACHE_SIZE = 16;
+
+    private static final Map<Key, TimerShapes> sCache = new LinkedHashMap<Key, TimerShapes>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, TimerShapes> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    final Path playTriangle;
+    final Path pauseShape;
+    final float pauseShapeStrokeWidth;
+    final Path finishShape;
+    final float finishShapeStrokeWidth;
+
+    /**
+     * Get the shapes for the timer size, building them if they aren't cached
+     *
+     * @param fullRadius       the radius of the view area
+     * @param playTriangleSide the length of the side of the play triangle, or -1 to derive it from the radius
+     */
+    static TimerShapes obtain(int fullRadius, int playTriangleSide) {
+        Key key = new Key(fullRadius, playTriangleSide);
+
+        synchronized (sCache) {
+            TimerShapes shapes = sCache.get(key);
+            if (shapes == null) {
+                shapes = new TimerShapes(fullRadius, playTriangleSide);
+                sCache.put(key, shapes);
+            }
+            return shapes;
+        }
+    }
+
+    private TimerShapes(int fullRadius, int playTriangleSide) {
+        playTriangle = getEquilateralTriangle(playTriangleSide != -1 ?
+                playTriangleSide : (int) (fullRadius / PLAY_TRIANGLE_SIZE_FACTOR));
+
+        pauseShape = getPauseShape((int) (fullRadius / PAUSE_SHAPE_SIZE_FACTOR));
+        pauseShapeStrokeWidth = fullRadius / PAUSE_SHAPE_STROKE_WIDTH_FACTOR;
+
+        finishShapeStrokeWidth = fullRadius / FINISH_SHAPE_STROKE_WIDTH_FACTOR;
+        finishShape = getFinishShape((int) (fullRadius / FINISH_SHAPE_SIZE_FACTOR), finishShapeStrokeWidth);
+    }
+
+    static Path getEquilateralTriangle(int side) {
+
+        int r = (int) (side*Math.sqrt(3)/6.0);
+
+        int x1 = -r;
+        int y1 = -side/2;
+
+        Path path = new Path();
+        path.moveTo(x1, y1);
+        path.lineTo(x1, y1 + side);
+        path.lineTo(x1 + r*3, 0);
+
+        return path;
+    }
+
+    static Path getPauseShape(int height) {
+
+        int width= (int) (height*PAUSE_SHAPE_WIDTH_TO_HEIGHT_FACTOR);
+
+        Path path = new Path();
+        path.moveTo(-width, -height);
+        path.lineTo(-width, height);
+        path.moveTo(width, -height);
+        path.lineTo(width, height);
+
+        return path;
+    }
+
+    static Path getFinishShape(int side, float width) {
+
+        Path path = new Path();
+
+        width/=2.0f;
+        float widthPart= (float) Math.sqrt(width*width/2);
+        float len1=side*1.5f;
+        float len2=side*0.6f;
+        float len1Part=(float) Math.sqrt(len1*len1/2);
+        float len2Part=(float) Math.sqrt(len2*len2/2);
+
+        path.moveTo(-0.289f*side, 0.484f*side);
+        path.lineTo(-0.289f*side-len2Part, 0.484f*side-len2Part);
+        path.moveTo(-0.289f*side-widthPart, 0.484f*side+widthPart);
+        path.lineTo(-0.289f*side-widthPart+len1Part, 0.484f*side+widthPart-len1Part);
+
+        return path;
+    }
+
+    private static final class Key {
+        final int fullRadius;
+        final int playTriangleSide;
+
+        Key(int fullRadius, int playTriangleSide) {
+            this.fullRadius = fullRadius;
+            this.playTriangleSide = playTriangleSide;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key key = (Key) o;
+            return fullRadius == key.fullRadius && playTriangleSide == key.playTriangleSide;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * fullRadius + playTriangleSide;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ *
+ * Copyright 2017 Dedoxyribose
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package ru.dedoxyribose.timerview;
+
+/**
+ * An immutable snapshot of the state of a TimerEngine.
+ *
+ * The engine publishes a new snapshot on every change, so all the values of one snapshot are consistent
+ * with each other, whichever thread has changed the engine and whichever reads it.
+ */
+public final class TimerState {
+
+    private final long mCurTime;
+    private final long mFullTime;
+    private final long mAnchorNanos;
+    private final long mAnchorTime;
+    private final boolean mIsPlaying;
+    private final boolean mIsTrackingTouch;
+
+    TimerState(long curTime, long fullTime, long anchorNanos, long anchorTime, boolean isPlaying,
+               boolean isTrackingTouch) {
+        mCurTime = curTime;
+        mFullTime = fullTime;
+        mAnchorNanos = anchorNanos;
+        mAnchorTime = anchorTime;
+        mIsPlaying = isPlaying;
+        mIsTrackingTouch = isTrackingTouch;
+    }
+
+    /**
+     * Get the current time value in milliseconds, as of the last tick
+     *
+     */
+    public long getCurTime() {
+        return mCurTime;
+    }
+
+    /**
+     * Get the time value representing the whole cycle of the timer in milliseconds
+     *
+     */
+    public long getFullTime() {
+        return mFullTime;
+    }
+
+    /**
+     * Whether the timer is playing
+     *
+     */
+    public boolean isPlaying() {
+        return mIsPlaying;
+    }
+
+    /**
+     * Whether the user is changing the time manually
+     *
+     */
+    public boolean isTrackingTouch() {
+        return mIsTrackingTouch;
+    }
+
+    /**
+     * Whether the time has reached the full time
+     *
+     */
+    public boolean isFinished() {
+        return mCurTime >= mFullTime;
+    }
+
+    /**
+     * Get the instant of the time source (in nanoseconds) the current time is counted from while playing
+     *
+     */
+    long getAnchorNanos() {
+        return mAnchorNanos;
+    }
+
+    /**
+     * Get the current time value at getAnchorNanos()
+     *
+     */
+    long getAnchorTime() {
+        return mAnchorTime;
+    }
+
+    /**
+     * Get the instant of the time source (in nanoseconds) at which the time reaches the full time
+     * if the timer keeps playing
+     *
+     */
+    public long getDeadlineNanos() {
+        return mAnchorNanos + (mFullTime - mAnchorTime) * 1000000L;
+    }
+
+    /**
+     * Get the time value at the instant of the time source if the timer keeps playing, not capped by the full time
+     *
+     * @param nowNanos the instant in nanoseconds
+     */
+    public long getTimeAt(long nowNanos) {
+        if (!mIsPlaying || mIsTrackingTouch)
+            return mCurTime;
+
+        // the time is always counted from the anchor, so the rounding errors don't accumulate
+        return mAnchorTime + (nowNanos - mAnchorNanos) / 1000000L;
+    }
+
+    /**
+     * Get the state at the instant of the time source if the timer keeps playing, with the current time counted
+     * from the anchor and capped by the full time
+     *
+     * @param nowNanos the instant in nanoseconds
+     */
+    public TimerState getStateAt(long nowNanos) {
+        long time = Math.min(getTimeAt(nowNanos), mFullTime);
+        if (time == mCurTime)
+            return this;
+
+        return new TimerState(time, mFullTime, mAnchorNanos, mAnchorTime, mIsPlaying, mIsTrackingTouch);
+    }
+
+    @Override
+    public String toString() {
+        return "TimerState{curTime=" + mCurTime + ", fullTime=" + mFullTime + ", playing=" + mIsPlaying
+                + ", trackingTouch=" + mIsTrackingTouch + "}";
+    }
+}
@@ -0,0 +1,422 @@
+/**
+ *
+ * Copyright 2017 Dedoxyribose
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+
+
+package ru.dedoxyribose.timerview;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.Nullable;
+import android.support.v4.content.ContextCompat;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Everything TimerView resolves from its attributes and the theme: the initial values, the icons and the paints.
+ *
+ * The styles are cached per theme and per set of the TimerView attributes, so the timers inflated from the same
+ * layout share one style and read their attributes only once. A shared style is never modified: a view calls
+ * {@link #copy()} before changing any of its paints. The shape paints are only templates, each view draws with its
+ * own copies of them, whose stroke widths depend on its size. The paints are never written to while drawing.
+ */
+final class TimerStyle {
+
+    private static final Map<Resources.Theme, Map<String, TimerStyle>> sCache = new WeakHashMap<>();
+
+    final long fullTime;
+    final long curTime;
+    final boolean countdown;
+    final boolean allowMoveForward;
+    final boolean allowMoveBackward;
+    final boolean enabled;
+    final boolean cacheStaticLayers;
+    final boolean digitAtlas;
+    final boolean metricsEnabled;
+
+    final String timeFormat;
+
+    final int progressWidth;
+    final int grooveWidth;
+    final int playButtonTriangleSideLength;
+    final float bigTextSize;
+    final float smallTextSize;
+
+    /**
+     * The tints set explicitly for the icons, null if not set
+     */
+    final Integer playButtonTint;
+    final Integer pauseButtonTint;
+    final Integer finishIconTint;
+
+    /**
+     * The color filters made of the tints above, shared by all the icons of the style
+     */
+    final ColorFilter playIconFilter;
+    final ColorFilter pauseIconFilter;
+    final ColorFilter finishIconFilter;
+
+    /**
+     * The icons the views make their own drawables of, null if not set
+     */
+    private final Drawable mPlayIcon;
+    private final Drawable mPauseIcon;
+    private final Drawable mFinishIcon;
+    private final Drawable mBackgroundDrawable;
+
+    final Paint groovePaint;
+    final Paint backPaint;
+    final Paint progressPaint;
+    final Paint bigTextPaint;
+    final Paint smallTextPaint;
+    final Paint playTrianglePaint;
+    final Paint pauseShapePaint;
+    final Paint finishShapePaint;
+
+    /**
+     * Get the style for the attributes, resolving it only if there's no cached one for the same theme and
+     * the same attribute values
+     *
+     * @param context the context of the view
+     * @param attrs   the attributes of the view, or null
+     */
+    static TimerStyle obtain(Context context, @Nullable AttributeSet attrs) {
+
+        Resources.Theme theme = context.getTheme();
+        String key = buildKey(attrs);
+
+        synchronized (sCache) {
+            Map<String, TimerStyle> styles = sCache.get(theme);
+            TimerStyle style = styles != null ? styles.get(key) : null;
+            if (style != null)
+                return style;
+        }
+
+        TimerStyle style = new TimerStyle(context, attrs);
+        if (!style.isShareable())
+            return style;
+
+        synchronized (sCache) {
+            Map<String, TimerStyle> styles = sCache.get(theme);
+            if (styles == null) {
+                styles = new HashMap<>();
+                sCache.put(theme, styles);
+            }
+            styles.put(key, style);
+        }
+        return style;
+    }
+
+    /**
+     * Build the cache key out of the style and the values of the TimerView attributes. The other attributes
+     * (e.g. the id or the layout params) don't affect the style, so they're left out
+     */
+    private static String buildKey(@Nullable AttributeSet attrs) {
+        if (attrs == null)
+            return "";
+
+        StringBuilder key = new StringBuilder();
+        key.append(attrs.getStyleAttribute());
+
+        int[] styleable = R.styleable.TimerView;
+        for (int i = 0, count = attrs.getAttributeCount(); i < count; i++) {
+            int nameResource = attrs.getAttributeNameResource(i);
+            for (int attr : styleable) {
+                if (attr == nameResource) {
+                    key.append(';').append(nameResource).append('=').append(attrs.getAttributeValue(i));
+                    break;
+                }
+            }
+        }
+        return key.toString();
+    }
+
+    private TimerStyle(Context context, @Nullable AttributeSet attrs) {
+
+        float density = context.getResources().getDisplayMetrics().density;
+
+        TypedValue typedValue = new TypedValue();
+        TypedArray a = context.obtainStyledAttributes(typedValue.data, new int[] { R.attr.colorPrimary, R.attr.colorPrimaryDark,
+            R.attr.colorAccent});
+
+        int grooveColor = a.getColor(1, ContextCompat.getColor(context, R.color.colorPrimaryDark));
+        int progressColor = a.getColor(2, ContextCompat.getColor(context, R.color.colorAccent));
+
+        int bigTextColor = a.getColor(2, ContextCompat.getColor(context, R.color.colorAccent));
+        int smallTextColor = a.getColor(2, ContextCompat.getColor(context, R.color.colorAccent));
+
+        int backColor = a.getColor(0, ContextCompat.getColor(context, R.color.colorPrimary));
+
+        int playButtonTintColor = a.getColor(2, ContextCompat.getColor(context, R.color.colorAccent));
+        int pauseButtonTintColor = a.getColor(2, ContextCompat.getColor(context, R.color.colorAccent));
+        int finishIconTintColor = a.getColor(2, ContextCompat.getColor(context, R.color.colorAccent));
+
+        a.recycle();
+
+        long fullTime = 60000;
+        long curTime = 0;
+        boolean countdown = true;
+        boolean allowMoveForward = true;
+        boolean allowMoveBackward = true;
+        boolean enabled = true;
+        boolean cacheStaticLayers = false;
+        boolean digitAtlas = false;
+        boolean metricsEnabled = false;
+        String timeFormat = "mm:ss";
+        int progressWidth = (int) (12 * density);
+        int grooveWidth = (int) (12 * density);
+        int playButtonTriangleSideLength = -1;
+        float bigTextSize = (int) (40 * density);
+        float smallTextSize = (int) (16 * density);
+        Integer playButtonTint = null;
+        Integer pauseButtonTint = null;
+        Integer finishIconTint = null;
+        Drawable playIcon = null;
+        Drawable pauseIcon = null;
+        Drawable finishIcon = null;
+        Drawable backgroundDrawable = null;
+
+        if (attrs != null) {
+            // Attribute initialization
+            final TypedArray b = context.obtainStyledAttributes(attrs,
+                    R.styleable.TimerView, 0, 0);
+
+            if (b.hasValue(R.styleable.TimerView_timeFormat))
+                timeFormat = b.getString(R.styleable.TimerView_timeFormat);
+
+            playButtonTintColor = b.getColor(R.styleable.TimerView_playButtonTint, playButtonTintColor);
+            playIcon = b.getDrawable(R.styleable.TimerView_playIcon);
+            if (playIcon != null && b.hasValue(R.styleable.TimerView_playButtonTint))
+                playButtonTint = playButtonTintColor;
+
+            pauseButtonTintColor = b.getColor(R.styleable.TimerView_pauseButtonTint, pauseButtonTintColor);
+            pauseIcon = b.getDrawable(R.styleable.TimerView_pauseIcon);
+            if (pauseIcon != null && b.hasValue(R.styleable.TimerView_pauseButtonTint))
+                pauseButtonTint = pauseButtonTintColor;
+
+            finishIconTintColor = b.getColor(R.styleable.TimerView_finishIconTint, finishIconTintColor);
+            finishIcon = b.getDrawable(R.styleable.TimerView_finishIcon);
+            if (finishIcon != null && b.hasValue(R.styleable.TimerView_finishIconTint))
+                finishIconTint = finishIconTintColor;
+
+            backgroundDrawable = b.getDrawable(R.styleable.TimerView_backgroundCircleDrawable);
+
+            fullTime = b.getInteger(R.styleable.TimerView_fulltime, (int) fullTime);
+            curTime = b.getInteger(R.styleable.TimerView_curtime, (int) curTime);
+
+            progressWidth = (int) b.getDimension(R.styleable.TimerView_progressWidth, progressWidth);
+            progressColor = b.getColor(R.styleable.TimerView_progressColor, progressColor);
+
+            grooveWidth = (int) b.getDimension(R.styleable.TimerView_grooveWidth, grooveWidth);
+            grooveColor = b.getColor(R.styleable.TimerView_grooveColor, grooveColor);
+
+            playButtonTriangleSideLength = (int) b.getDimension(R.styleable.TimerView_playButtonTriangleSideLength,
+                    playButtonTriangleSideLength);
+
+            bigTextSize = (int) b.getDimension(R.styleable.TimerView_bigTextSize, bigTextSize);
+            smallTextSize = (int) b.getDimension(R.styleable.TimerView_smallTextSize, smallTextSize);
+            bigTextColor = b.getColor(R.styleable.TimerView_bigTextColor, bigTextColor);
+            smallTextColor = b.getColor(R.styleable.TimerView_smallTextColor, smallTextColor);
+
+            backColor = b.getColor(R.styleable.TimerView_backgroundCircleColor, backColor);
+
+            allowMoveForward = b.getBoolean(R.styleable.TimerView_allowMoveForward, allowMoveForward);
+            allowMoveBackward = b.getBoolean(R.styleable.TimerView_allowMoveBackward, allowMoveBackward);
+
+            enabled = b.getBoolean(R.styleable.TimerView_enabled, enabled);
+
+            countdown = b.getBoolean(R.styleable.TimerView_countdown, countdown);
+
+            cacheStaticLayers = b.getBoolean(R.styleable.TimerView_cacheStaticLayers, cacheStaticLayers);
+
+            digitAtlas = b.getBoolean(R.styleable.TimerView_digitAtlas, digitAtlas);
+
+            metricsEnabled = b.getBoolean(R.styleable.TimerView_metricsEnabled, metricsEnabled);
+
+            b.recycle();
+        }
+
+        this.fullTime = fullTime;
+        this.curTime = curTime;
+        this.countdown = countdown;
+        this.allowMoveForward = allowMoveForward;
+        this.allowMoveBackward = allowMoveBackward;
+        this.enabled = enabled;
+        this.cacheStaticLayers = cacheStaticLayers;
+        this.digitAtlas = digitAtlas;
+        this.metricsEnabled = metricsEnabled;
+        this.timeFormat = timeFormat;
+        this.progressWidth = progressWidth;
+        this.grooveWidth = grooveWidth;
+        this.playButtonTriangleSideLength = playButtonTriangleSideLength;
+        this.bigTextSize = bigTextSize;
+        this.smallTextSize = smallTextSize;
+
+        this.playButtonTint = playButtonTint;
+        this.pauseButtonTint = pauseButtonTint;
+        this.finishIconTint = finishIconTint;
+        playIconFilter = createIconFilter(playButtonTint);
+        pauseIconFilter = createIconFilter(pauseButtonTint);
+        finishIconFilter = createIconFilter(finishIconTint);
+
+        mPlayIcon = playIcon;
+        mPauseIcon = pauseIcon;
+        mFinishIcon = finishIcon;
+        mBackgroundDrawable = backgroundDrawable;
+
+        groovePaint = new Paint();
+        groovePaint.setColor(grooveColor);
+        groovePaint.setAntiAlias(true);
+        groovePaint.setStyle(Paint.Style.STROKE);
+        groovePaint.setStrokeWidth(grooveWidth);
+
+        backPaint = new Paint();
+        backPaint.setColor(backColor);
+        backPaint.setAntiAlias(true);
+        backPaint.setStyle(Paint.Style.FILL);
+
+        progressPaint = new Paint();
+        progressPaint.setColor(progressColor);
+        progressPaint.setAntiAlias(true);
+        progressPaint.setStyle(Paint.Style.STROKE);
+        progressPaint.setStrokeWidth(progressWidth);
+
+        bigTextPaint = new Paint();
+        bigTextPaint.setColor(bigTextColor);
+        bigTextPaint.setAntiAlias(true);
+        bigTextPaint.setStyle(Paint.Style.FILL);
+        bigTextPaint.setTextSize(bigTextSize);
+
+        smallTextPaint = new Paint();
+        smallTextPaint.setColor(smallTextColor);
+        smallTextPaint.setAntiAlias(true);
+        smallTextPaint.setStyle(Paint.Style.FILL);
+        smallTextPaint.setTextSize(smallTextSize);
+
+        playTrianglePaint = new Paint();
+        playTrianglePaint.setColor(playButtonTintColor);
+        playTrianglePaint.setAntiAlias(true);
+        playTrianglePaint.setStyle(Paint.Style.FILL);
+
+        pauseShapePaint = new Paint();
+        pauseShapePaint.setColor(pauseButtonTintColor);
+        pauseShapePaint.setAntiAlias(true);
+        pauseShapePaint.setStyle(Paint.Style.STROKE);
+
+        finishShapePaint = new Paint();
+        finishShapePaint.setColor(finishIconTintColor);
+        finishShapePaint.setAntiAlias(true);
+        finishShapePaint.setStyle(Paint.Style.STROKE);
+    }
+
+    private TimerStyle(TimerStyle other) {
+        fullTime = other.fullTime;
+        curTime = other.curTime;
+        countdown = other.countdown;
+        allowMoveForward = other.allowMoveForward;
+        allowMoveBackward = other.allowMoveBackward;
+        enabled = other.enabled;
+        cacheStaticLayers = other.cacheStaticLayers;
+        digitAtlas = other.digitAtlas;
+        metricsEnabled = other.metricsEnabled;
+        timeFormat = other.timeFormat;
+        progressWidth = other.progressWidth;
+        grooveWidth = other.grooveWidth;
+        playButtonTriangleSideLength = other.playButtonTriangleSideLength;
+        bigTextSize = other.bigTextSize;
+        smallTextSize = other.smallTextSize;
+        playButtonTint = other.playButtonTint;
+        pauseButtonTint = other.pauseButtonTint;
+        finishIconTint = other.finishIconTint;
+        playIconFilter = other.playIconFilter;
+        pauseIconFilter = other.pauseIconFilter;
+        finishIconFilter = other.finishIconFilter;
+        mPlayIcon = other.mPlayIcon;
+        mPauseIcon = other.mPauseIcon;
+        mFinishIcon = other.mFinishIcon;
+        mBackgroundDrawable = other.mBackgroundDrawable;
+
+        groovePaint = new Paint(other.groovePaint);
+        backPaint = new Paint(other.backPaint);
+        progressPaint = new Paint(other.progressPaint);
+        bigTextPaint = new Paint(other.bigTextPaint);
+        smallTextPaint = new Paint(other.smallTextPaint);
+        playTrianglePaint = new Paint(other.playTrianglePaint);
+        pauseShapePaint = new Paint(other.pauseShapePaint);
+        finishShapePaint = new Paint(other.finishShapePaint);
+    }
+
+    /**
+     * Make a private copy of the style, with its own paints which the view may change
+     */
+    TimerStyle copy() {
+        return new TimerStyle(this);
+    }
+
+    @Nullable
+    Drawable newPlayIcon(Resources resources) {
+        return newDrawable(mPlayIcon, resources);
+    }
+
+    @Nullable
+    Drawable newPauseIcon(Resources resources) {
+        return newDrawable(mPauseIcon, resources);
+    }
+
+    @Nullable
+    Drawable newFinishIcon(Resources resources) {
+        return newDrawable(mFinishIcon, resources);
+    }
+
+    @Nullable
+    Drawable newBackgroundDrawable(Resources resources) {
+        return newDrawable(mBackgroundDrawable, resources);
+    }
+
+    /**
+     * Whether all the drawables can be instantiated for every view, so the style can be shared
+     */
+    private boolean isShareable() {
+        return isShareable(mPlayIcon) && isShareable(mPauseIcon) && isShareable(mFinishIcon)
+                && isShareable(mBackgroundDrawable);
+    }
+
+    private static boolean isShareable(@Nullable Drawable drawable) {
+        return drawable == null || drawable.getConstantState() != null;
+    }
+
+    /**
+     * Make a drawable of its own for a view. It shares the bitmap and the other heavy state with the prototype
+     */
+    @Nullable
+    private static Drawable newDrawable(@Nullable Drawable prototype, Resources resources) {
+        if (prototype == null)
+            return null;
+
+        Drawable.ConstantState state = prototype.getConstantState();
+        return state != null ? state.newDrawable(resources) : prototype;
+    }
+
+    @Nullable
+    private static ColorFilter createIconFilter(@Nullable Integer tint) {
+        return tint != null ? new PorterDuffColorFilter(tint, PorterDuff.Mode.SRC_ATOP) : null;
+    }
+}
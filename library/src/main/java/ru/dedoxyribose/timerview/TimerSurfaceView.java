@@ -0,0 +1,473 @@
+/**
+ *
+ * Copyright 2017 Dedoxyribose
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package ru.dedoxyribose.timerview;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+import android.graphics.SurfaceTexture;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.MotionEvent;
+import android.view.Surface;
+import android.view.TextureView;
+import android.view.ViewParent;
+
+import java.util.ArrayList;
+
+/**
+ * A TimerView rendered on its own thread, for the screens with many running timers.
+ *
+ * It takes the same xml attributes as TimerView and draws the same scene, but the ticking, the drawing and the
+ * touch handling all happen on a dedicated render thread, paced by its own vsync callbacks. The UI thread only
+ * forwards the touches and the commands. The appearance is changed with edit(), and the state is observed
+ * with subscribe() rather than with the listeners.
+ */
+public class TimerSurfaceView extends TextureView implements TextureView.SurfaceTextureListener {
+
+    /**
+     * The view drawn on the surface. It isn't attached to any window: while the view is attached, it's owned
+     * by the render thread
+     */
+    private final TimerView mScene;
+
+    /**
+     * The render thread of the current attachment, or null while detached
+     */
+    private Renderer mRenderer;
+
+    /**
+     * The render thread of the previous attachment, which may still be finishing its work on the scene
+     */
+    private HandlerThread mRetiredThread;
+
+    /**
+     * Indicates whether the view is shown in a visible window, as last forwarded to the render thread
+     */
+    private boolean mIsShown = false;
+
+    /**
+     * The edits made while detached, applied on the render thread of the next attachment
+     */
+    private final ArrayList<Runnable> mPendingEdits = new ArrayList<>();
+
+    /**
+     * The changes to apply to the appearance of the timer, see edit()
+     */
+    public interface Edit {
+
+        /**
+         * Change the properties of the timer. Called on the render thread, the editor is applied after it,
+         * unless this throws
+         *
+         * @param editor The editor of the rendered TimerView, apply() must not be called on it
+         */
+        void onEdit(TimerView.Editor editor);
+    }
+
+    /**
+     * The render thread of one attachment to a window, and everything it owns. A new one is started on every
+     * attachment, so that the work left to the previous thread never touches the state of the new one
+     */
+    private final class Renderer implements TimerView.Host, Choreographer.FrameCallback {
+
+        private final HandlerThread mThread;
+        private final Handler mHandler;
+
+        /**
+         * The surface the scene is drawn on, only touched by the render thread
+         */
+        private Surface mSurface;
+
+        private volatile boolean mIsShown = false;
+
+        private boolean mIsFramePending = false;
+
+        private final Runnable mInvalidateRunnable = new Runnable() {
+            @Override
+            public void run() {
+                onSceneInvalidated();
+            }
+        };
+
+        Renderer() {
+            mThread = new HandlerThread("TimerSurfaceView");
+            mThread.start();
+            mHandler = new Handler(mThread.getLooper());
+        }
+
+        void post(Runnable action) {
+            mHandler.post(action);
+        }
+
+        @Override
+        public boolean isSceneVisible() {
+            return mSurface != null && mIsShown;
+        }
+
+        @Override
+        public void onSceneInvalidated() {
+            // the previous render thread may still be finishing its work on the scene
+            if (Looper.myLooper() != mThread.getLooper()) {
+                mHandler.post(mInvalidateRunnable);
+                return;
+            }
+
+            if (mIsFramePending || mSurface == null)
+                return;
+
+            mIsFramePending = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mIsFramePending = false;
+            render();
+        }
+
+        void setSurface(SurfaceTexture surfaceTexture, int width, int height) {
+            mSurface = new Surface(surfaceTexture);
+            layoutScene(width, height);
+            mScene.updateOnScreen();
+            mScene.invalidate();
+        }
+
+        private void render() {
+            if (mSurface == null)
+                return;
+
+            Canvas canvas;
+            try {
+                canvas = mSurface.lockCanvas(null);
+            } catch (IllegalArgumentException | Surface.OutOfResourcesException e) {
+                return;
+            }
+
+            try {
+                canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+                mScene.draw(canvas);
+            } finally {
+                mSurface.unlockCanvasAndPost(canvas);
+            }
+        }
+
+        void releaseSurface() {
+            if (mSurface == null)
+                return;
+
+            mSurface.release();
+            mSurface = null;
+
+            if (mIsFramePending) {
+                Choreographer.getInstance().removeFrameCallback(this);
+                mIsFramePending = false;
+            }
+        }
+    }
+
+    public TimerSurfaceView(Context context) {
+        this(context, null);
+    }
+
+    public TimerSurfaceView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+
+        mScene = new TimerView(context, attrs);
+
+        setOpaque(false);
+        setSurfaceTextureListener(this);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+
+        final Renderer renderer = new Renderer();
+        final HandlerThread retiredThread = mRetiredThread;
+        mRetiredThread = null;
+
+        if (retiredThread != null) {
+            // the scene belongs to one thread at a time, so the new one waits for the previous one to end
+            renderer.post(new Runnable() {
+                @Override
+                public void run() {
+                    joinUninterruptibly(retiredThread);
+                }
+            });
+        }
+
+        mRenderer = renderer;
+        mScene.attachHost(renderer, renderer.mThread.getLooper());
+
+        for (Runnable edit : mPendingEdits)
+            renderer.post(edit);
+        mPendingEdits.clear();
+
+        updateShown();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        // destroys the surface texture, which has to be released by the render thread drawing on it
+        super.onDetachedFromWindow();
+
+        final Renderer renderer = mRenderer;
+
+        // after all the messages posted before
+        renderer.post(new Runnable() {
+            @Override
+            public void run() {
+                renderer.releaseSurface();
+                mScene.detachHost(renderer);
+                renderer.mThread.quit();
+            }
+        });
+        mRenderer = null;
+        mRetiredThread = renderer.mThread;
+        mIsShown = false;
+    }
+
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    @Override
+    protected void onVisibilityChanged(@NonNull android.view.View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+
+        updateShown();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+
+        updateShown();
+    }
+
+    private void updateShown() {
+        final Renderer renderer = mRenderer;
+        final boolean isShown = renderer != null && getWindowVisibility() == VISIBLE && isShown();
+        if (isShown == mIsShown)
+            return;
+
+        mIsShown = isShown;
+        renderer.post(new Runnable() {
+            @Override
+            public void run() {
+                renderer.mIsShown = isShown;
+                mScene.updateOnScreen();
+            }
+        });
+    }
+
+    @Override
+    public void onSurfaceTextureAvailable(final SurfaceTexture surfaceTexture, final int width, final int height) {
+        final Renderer renderer = mRenderer;
+        if (renderer == null)
+            return;
+
+        renderer.post(new Runnable() {
+            @Override
+            public void run() {
+                renderer.setSurface(surfaceTexture, width, height);
+            }
+        });
+    }
+
+    @Override
+    public void onSurfaceTextureSizeChanged(SurfaceTexture surfaceTexture, final int width, final int height) {
+        Renderer renderer = mRenderer;
+        if (renderer == null)
+            return;
+
+        renderer.post(new Runnable() {
+            @Override
+            public void run() {
+                layoutScene(width, height);
+                mScene.invalidate();
+            }
+        });
+    }
+
+    @Override
+    public boolean onSurfaceTextureDestroyed(final SurfaceTexture surfaceTexture) {
+        final Renderer renderer = mRenderer;
+        if (renderer == null)
+            return true; // no render thread has drawn on it
+
+        // the render thread may be drawing right now, so the texture is released by it
+        renderer.post(new Runnable() {
+            @Override
+            public void run() {
+                renderer.releaseSurface();
+                surfaceTexture.release();
+                mScene.updateOnScreen();
+            }
+        });
+        return false;
+    }
+
+    @Override
+    public void onSurfaceTextureUpdated(SurfaceTexture surfaceTexture) {
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        Renderer renderer = mRenderer;
+        if (!isEnabled() || renderer == null)
+            return false;
+
+        ViewParent parent = getParent();
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                if (parent != null)
+                    parent.requestDisallowInterceptTouchEvent(true);
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                if (parent != null)
+                    parent.requestDisallowInterceptTouchEvent(false);
+                break;
+        }
+
+        // the event is recycled by the caller, so the render thread gets a copy
+        final MotionEvent copy = MotionEvent.obtain(event);
+        renderer.post(new Runnable() {
+            @Override
+            public void run() {
+                mScene.onTouchEvent(copy);
+                copy.recycle();
+            }
+        });
+        return true;
+    }
+
+    private void layoutScene(int width, int height) {
+        mScene.measure(MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY));
+        mScene.layout(0, 0, width, height);
+    }
+
+    /**
+     * Change the appearance of the timer. The changes are applied on the render thread, all at once. Must be
+     * called on the main thread
+     *
+     */
+    public void edit(@NonNull final Edit edit) {
+        Runnable apply = new Runnable() {
+            @Override
+            public void run() {
+                TimerView.Editor editor = mScene.edit();
+                edit.onEdit(editor);
+                editor.apply();
+            }
+        };
+
+        // while detached, the scene may still belong to the render thread which is about to end
+        if (mRenderer != null)
+            mRenderer.post(apply);
+        else mPendingEdits.add(apply);
+    }
+
+    /**
+     * Start playing. Can be called from any thread
+     */
+    public void play() {
+        mScene.play();
+    }
+
+    /**
+     * Stop playing. Can be called from any thread
+     */
+    public void stop() {
+        mScene.stop();
+    }
+
+    /**
+     * Whether the timer is playing at the moment
+     *
+     */
+    public boolean isPlaying() {
+        return mScene.isIsPlaying();
+    }
+
+    /**
+     * Change the current time progress value. Can be called from any thread
+     *
+     * @param curTime the new value of time in milliseconds
+     */
+    public void setCurTimeMillis(long curTime) {
+        mScene.setCurTimeMillis(curTime);
+    }
+
+    /**
+     * Get the current time progress value in milliseconds
+     *
+     */
+    public long getCurTimeMillis() {
+        return mScene.getCurTimeMillis();
+    }
+
+    /**
+     * Set the time value representing the whole cycle of the timer (the max value). Can be called from any thread
+     *
+     * @param fullTime the new fulltime value in milliseconds
+     */
+    public void setFullTimeMillis(long fullTime) {
+        mScene.setFullTimeMillis(fullTime);
+    }
+
+    /**
+     * Get the time value representing the whole cycle of the timer (the max value) in milliseconds
+     *
+     */
+    public long getFullTimeMillis() {
+        return mScene.getFullTimeMillis();
+    }
+
+    /**
+     * Get the current state snapshot of the timer. Can be called from any thread
+     *
+     */
+    public TimerState getState() {
+        return mScene.getState();
+    }
+
+    /**
+     * Observe the state snapshots of the timer on the main thread. The changes are conflated, so a slow
+     * observer only gets the latest state
+     *
+     */
+    public TimerEngine.Subscription subscribe(@NonNull TimerEngine.StateObserver observer) {
+        return mScene.subscribe(observer);
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ *
+ * Copyright 2017 Dedoxyribose
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+
+
+package ru.dedoxyribose.timerview;
+
+import android.view.Choreographer;
+
+/**
+ * The per-thread ticker driving all the playing timers of a looper thread from a single Choreographer frame callback.
+ *
+ * The clients are registered while they need ticks and unregistered as soon as they don't, so the
+ * per-frame cost depends only on the amount of playing timers. There's one instance per thread, as the
+ * Choreographer, so it's the main thread one for the regular views and a render thread one for TimerSurfaceView.
+ */
+final class TimerTicker implements Choreographer.FrameCallback {
+
+    interface Client {
+
+        /**
+         * Called once per frame while the client is registered
+         *
+         * @param frameTimeNanos the time the frame started rendering at, in the System.nanoTime() base
+         */
+        void onTick(long frameTimeNanos);
+    }
+
+    private static final ThreadLocal<TimerTicker> sInstance = new ThreadLocal<>();
+
+    private Client[] mClients = new Client[8];
+    private int mClientCount = 0;
+
+    /**
+     * The copy of mClients iterated over during a frame, so that the clients can (un)register from onTick
+     */
+    private Client[] mDispatchClients = new Client[8];
+    private int mDispatchCount = 0;
+
+    private boolean mIsFrameScheduled = false;
+
+    static TimerTicker getInstance() {
+        TimerTicker ticker = sInstance.get();
+        if (ticker == null) {
+            ticker = new TimerTicker();
+            sInstance.set(ticker);
+        }
+        return ticker;
+    }
+
+    private TimerTicker() {
+    }
+
+    /**
+     * Start ticking the client on every frame. Does nothing if it's already registered
+     */
+    void register(Client client) {
+        if (indexOf(client) != -1)
+            return;
+
+        if (mClientCount == mClients.length) {
+            Client[] clients = new Client[mClientCount * 2];
+            System.arraycopy(mClients, 0, clients, 0, mClientCount);
+            mClients = clients;
+        }
+        mClients[mClientCount++] = client;
+
+        scheduleFrame();
+    }
+
+    /**
+     * Stop ticking the client. Does nothing if it's not registered
+     */
+    void unregister(Client client) {
+        int index = indexOf(client);
+        if (index == -1)
+            return;
+
+        System.arraycopy(mClients, index + 1, mClients, index, mClientCount - index - 1);
+        mClients[--mClientCount] = null;
+
+        // don't tick it anymore if it's stopped in the middle of a frame
+        for (int i = 0; i < mDispatchCount; i++) {
+            if (mDispatchClients[i] == client)
+                mDispatchClients[i] = null;
+        }
+
+        if (mClientCount == 0 && mIsFrameScheduled) {
+            Choreographer.getInstance().removeFrameCallback(this);
+            mIsFrameScheduled = false;
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mIsFrameScheduled = false;
+
+        if (mDispatchClients.length < mClientCount)
+            mDispatchClients = new Client[mClients.length];
+        System.arraycopy(mClients, 0, mDispatchClients, 0, mClientCount);
+        mDispatchCount = mClientCount;
+
+        for (int i = 0; i < mDispatchCount; i++) {
+            Client client = mDispatchClients[i];
+            if (client != null) {
+                mDispatchClients[i] = null;
+                client.onTick(frameTimeNanos);
+            }
+        }
+        mDispatchCount = 0;
+
+        scheduleFrame();
+    }
+
+    private void scheduleFrame() {
+        if (mIsFrameScheduled || mClientCount == 0)
+            return;
+
+        Choreographer.getInstance().postFrameCallback(this);
+        mIsFrameScheduled = true;
+    }
+
+    private int indexOf(Client client) {
+        for (int i = 0; i < mClientCount; i++) {
+            if (mClients[i] == client)
+                return i;
+        }
+        return -1;
+    }
+}
@@ -12,73 +12,81 @@
 
 package ru.dedoxyribose.timerview;
 
-import android.animation.Animator;
-import android.animation.ValueAnimator;
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.Resources;
-import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Path;
-import android.graphics.Point;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffColorFilter;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.support.annotation.DrawableRes;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.support.v4.content.ContextCompat;
 import android.util.AttributeSet;
-import android.util.TypedValue;
 import android.view.MotionEvent;
 import android.view.View;
-import android.view.animation.LinearInterpolator;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.TimeZone;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
 
 public class TimerView extends View {
 
     public static int INVALID_VALUE = -1;
 
-    private static final float PLAY_TRIANGLE_SIZE_FACTOR = 2.0f;
-    private static final float PAUSE_SHAPE_SIZE_FACTOR = 8.0f;
-    private static final float PAUSE_SHAPE_STROKE_WIDTH_FACTOR = 17.0f;
-    private static final float PAUSE_SHAPE_WIDTH_TO_HEIGHT_FACTOR = 0.6f;
-    private static final float FINISH_SHAPE_SIZE_FACTOR = 2.0f;
-    private static final float FINISH_SHAPE_STROKE_WIDTH_FACTOR = 8f;
+    /**
+     * The events of the listeners, see addOnTimerViewChangeListener
+     */
+    public static final int EVENT_TIME_CHANGED_BY_USER = 1;
+    public static final int EVENT_TRACKING_TOUCH = 1 << 1;
+    public static final int EVENT_PLAY_STARTED = 1 << 2;
+    public static final int EVENT_PLAY_STOPPED = 1 << 3;
+    public static final int EVENT_PLAY_FINISHED = 1 << 4;
 
     /**
-     * Offset = -90 indicates that the progress starts from 12 o'clock.
+     * The onTick event of OnTimerViewTickListener, it's never included by default
      */
-    private static final int ANGLE_OFFSET = -90;
+    public static final int EVENT_TICK = 1 << 5;
+
+    /**
+     * All the events but EVENT_TICK
+     */
+    public static final int EVENT_ALL = EVENT_TIME_CHANGED_BY_USER | EVENT_TRACKING_TOUCH | EVENT_PLAY_STARTED
+            | EVENT_PLAY_STOPPED | EVENT_PLAY_FINISHED;
+
 
     /**
-     * The current points value.
+     * Offset = -90 indicates that the progress starts from 12 o'clock.
      */
-    private int mCurTime = 0;
+    private static final int ANGLE_OFFSET = -90;
 
     /**
-     * The string containing formatted representation of time how it will be print out on the timer
+     * The timer state this view draws
      */
-    private String mCurFormattedTime;
+    private TimerEngine mEngine;
 
     /**
-     * The time representing the whole cycle of the timer
+     * The chars containing formatted representation of time how it will be print out on the timer
      */
-    private int mFullTime = 60000;
+    private char[] mCurFormattedTime;
 
     /**
-     * The system time on the previous animation step
+     * The amount of chars in mCurFormattedTime
      */
-    private long mPreviousSystemTime;
+    private int mCurFormattedTimeLength;
 
     /**
      * The Drawable for the play button
@@ -115,6 +123,34 @@ public class TimerView extends View {
      */
     private Path mFinishShape;
 
+    /**
+     * The resources the icons were set from, 0 if the icons were set otherwise. Such icons are loaded from
+     * IconCache for the current size of the view
+     */
+    private int mPlayIconRes = 0;
+    private int mPauseIconRes = 0;
+    private int mFinishIconRes = 0;
+
+    private static final int CHANGE_GEOMETRY = 1;
+    private static final int CHANGE_TEXT_BOUNDS = 1 << 1;
+    private static final int CHANGE_ICONS = 1 << 2;
+    private static final int CHANGE_APPEARANCE = 1 << 3;
+
+    /**
+     * The amount of the edits in progress. While it's above 0 the setters only collect mPendingChanges
+     */
+    private int mEditDepth = 0;
+
+    /**
+     * The CHANGE_ flags of the recalculations the setters have requested during the edit
+     */
+    private int mPendingChanges = 0;
+
+    /**
+     * Indicates whether the geometry has been calculated for the size of the view
+     */
+    private boolean mHasGeometry = false;
+
     /**
      * The Drawable for the background
      */
@@ -146,24 +182,14 @@ public class TimerView extends View {
     private boolean mCountdown = true;
 
     /**
-     * The amount of touch events received at the current touch session
-     */
-    private int mThisTouchUpdateTimes = 0;
-
-    /**
-     * The time of the previous moment
-     */
-    private int mPreviousTime = -1;
-
-    /**
-     * The time before current touch session started
+     * The format for the time representation on the screen
      */
-    private int mTimeBeforeTouch = 0;
+    private String mTimeFormat = "mm:ss";
 
     /**
-     * The format for the time representation on the screen
+     * The formatter compiled from mTimeFormat
      */
-    private String mTimeFormat = "mm:ss";
+    private TimeFormatter mTimeFormatter;
 
     /**
      * The radius of the inner arc
@@ -179,6 +205,27 @@ public class TimerView extends View {
      * The progress sweep value adjusted by the animation
      */
     private float mVisibleProgressSweep = 0;
+
+    /**
+     * The formatted time drawn on the last onDraw
+     */
+    private char[] mDrawnFormattedTime = new char[0];
+    private int mDrawnFormattedTimeLength = -1;
+
+    /**
+     * The progress sweep drawn on the last onDraw
+     */
+    private float mDrawnProgressSweep = 0;
+
+    /**
+     * The amount of redraws skipped since nothing visible had changed
+     */
+    private long mSkippedRedrawCount = 0;
+
+    /**
+     * The performance metrics, null unless enabled
+     */
+    private TimerViewMetrics mMetrics;
     private Paint mProgressPaint;
 
     /**
@@ -189,9 +236,14 @@ public class TimerView extends View {
     private Paint mGroovePaint;
 
     /**
-     * The animator for smooth transitions
+     * Smooths the visible sweep on the user changes
+     */
+    private final SweepSpring mSweepSpring = new SweepSpring();
+
+    /**
+     * The frame time of the previous spring step, or -1 if the spring has just started moving
      */
-    private ValueAnimator mSweepAnimation;
+    private long mSpringFrameNanos = -1;
 
     private float mBigTextSize = 40;
     private float mSmallTextSize = 16;
@@ -200,16 +252,62 @@ public class TimerView extends View {
     private Rect mBigTextRect = new Rect();
     private Rect mSmallTextRect = new Rect();
 
+    /**
+     * Whether the time text is blitted from the pre-rasterized digits instead of drawText
+     */
+    private boolean mDigitAtlasEnabled = false;
+
+    /**
+     * The non-digit chars of the formatted time, which the digit atlases contain along with the digits
+     */
+    private String mTimeSeparators = "";
+
+    private DigitAtlas mBigDigitAtlas;
+    private DigitAtlas mSmallDigitAtlas;
+
     private Paint mBackPaint;
 
+    /**
+     * Whether the background and the groove are drawn once into mStaticLayer instead of every frame
+     */
+    private boolean mCacheStaticLayers = false;
+
+    /**
+     * The offscreen bitmap holding the background and the groove
+     */
+    private Bitmap mStaticLayer;
+    private Canvas mStaticLayerCanvas;
+
+    /**
+     * Indicates whether mStaticLayer is up to date with the current size and colors
+     */
+    private boolean mIsStaticLayerValid = false;
+
     private Integer mPlayButtonTint = null;
     private Integer mPauseButtonTint = null;
     private Integer mFinishIconTint = null;
 
     private Paint mPlayTrianglePaint;
+
+    /**
+     * The shape paints are this view's own copies of the style ones, as their stroke widths depend on the size
+     */
     private Paint mPauseShapePaint;
     private Paint mFinishShapePaint;
 
+    /**
+     * The style the paints come from, shared with the views inflated with the same attributes until mOwnsStyle
+     */
+    private TimerStyle mStyle;
+    private boolean mOwnsStyle = false;
+
+    /**
+     * The stroke widths of the default shapes for the current size. The paints may be shared, so they're
+     * set right before drawing
+     */
+    private float mPauseShapeStrokeWidth;
+    private float mFinishShapeStrokeWidth;
+
     /**
      * The center X of the canvas
      */
@@ -221,36 +319,241 @@ public class TimerView extends View {
     private int mTranslateY;
 
     /**
-     * Indicates whether the touch is in progress
+     * Indicates whether the view is attached to the window
      */
-    private boolean mIsTouchProgress = false;
+    private boolean mIsAttached = false;
 
     /**
-     * Indicates whether the playing is in the progress
+     * Indicates whether any part of the view is on the screen. Nothing is ticked or drawn while it's not,
+     * the time keeps going through the engine's anchor anyway
      */
-    private boolean mIsPlaying = false;
+    private boolean mIsOnScreen = false;
+
+    private final Rect mVisibleRect = new Rect();
 
     /**
-     * Indicates whether the view is attached to the window
+     * Catches the view being scrolled or laid out in or out of the screen
      */
-    private boolean mIsAttached = false;
+    private final ViewTreeObserver.OnScrollChangedListener mScrollChangedListener =
+            new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            updateOnScreen();
+        }
+    };
+
+    private final ViewTreeObserver.OnGlobalLayoutListener mGlobalLayoutListener =
+            new ViewTreeObserver.OnGlobalLayoutListener() {
+        @Override
+        public void onGlobalLayout() {
+            updateOnScreen();
+        }
+    };
+
+    /**
+     * Indicates whether mTickClient is registered in the shared ticker
+     */
+    private boolean mIsTickScheduled = false;
+
+    /**
+     * The client of the shared ticker advancing the time while the timer is playing
+     */
+    private final TimerTicker.Client mTickClient = new TimerTicker.Client() {
+        @Override
+        public void onTick(long frameTimeNanos) {
+            if (mMetrics != null)
+                mMetrics.recordTick(frameTimeNanos, System.nanoTime());
+
+            mEngine.tick();
+            dispatchSecondTick();
+
+            if (mSweepSpring.isMoving())
+                stepSpring(frameTimeNanos);
+
+            if (!mEngine.isPlaying() && !mSweepSpring.isMoving())
+                cancelTick();
+            else if (!mSweepSpring.isMoving())
+                sleepUntilNextChange();
+        }
+    };
+
+    /**
+     * The delay below which the ticker keeps running at the frame rate instead of sleeping
+     */
+    private static final long MIN_SLEEP_MILLIS = 32;
+
+    /**
+     * Indicates whether the ticking is suspended until the next visible change, see sleepUntilNextChange
+     */
+    private boolean mIsSleeping = false;
+
+    private final Runnable mWakeUpRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mIsSleeping = false;
+            scheduleTick();
+        }
+    };
+
+    /**
+     * The handler of the thread the view lives on: the main one, or the render thread of the hosting
+     * TimerSurfaceView. Also posts the finish at the exact deadline, independently of the frames being drawn
+     */
+    private volatile Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
 
     /**
-     * Indicates whether the user is allowed to move the time forward manually
+     * Runs the state observers on the main thread
      */
-    private boolean mAllowMoveForward = true;
+    private final Executor mMainExecutor = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            mMainHandler.post(command);
+        }
+    };
+
+    /**
+     * The TimerSurfaceView rendering this view on its own thread, or null if it's a regular view
+     */
+    private volatile Host mHost;
 
     /**
-     * Indicates whether the user is allowed to move the time backward manually
+     * Guards the hand-over of the view between the threads, see attachHost()
      */
-    private boolean mAllowMoveBackward = true;
+    private final Object mHostLock = new Object();
+
+    /**
+     * Brings the view up to date with the engine changed from another thread
+     */
+    private final Runnable mSyncRunnable = new Runnable() {
+        @Override
+        public void run() {
+            syncWithEngine();
+        }
+    };
+
+    private final Runnable mFinishRunnable = new Runnable() {
+        @Override
+        public void run() {
+            // posted on the uptime clock, which stops in deep sleep, so it comes late rather than early then. The
+            // deadline is kept by the time source of the engine though, which may run at another pace
+            if (mEngine.isPlaying() && mEngine.getOvershootNanos() < 0) {
+                scheduleFinish();
+                return;
+            }
+
+            mEngine.tick();
+            dispatchSecondTick();
+        }
+    };
 
     /**
      * The current touch angle of arc.
      */
     private double mTouchAngle;
+
+    /**
+     * Whether the dispatch of the time changed by the user is posted for the next frame. The notifications
+     * are coalesced to one per frame, no matter how many touch samples come
+     */
+    private boolean mIsUserChangePending = false;
+
+    private final Runnable mUserChangeDispatcher = new Runnable() {
+        @Override
+        public void run() {
+            dispatchUserChange(false);
+        }
+    };
+
+    private final TimerViewListeners mListeners = new TimerViewListeners();
+
+    /**
+     * The listener set by setOnTimerViewChangeListener, also present in mListeners
+     */
     private OnTimerViewChangeListener mOnTimerViewChangeListener;
-    
+
+    /**
+     * The whole second of the current time the tick listeners were last notified about
+     */
+    private long mTickSecond = 0;
+
+    /**
+     * Redraws the view on the engine changes and forwards them to mListeners
+     */
+    private final TimerEngine.Listener mEngineListener = new TimerEngine.Listener() {
+        @Override
+        public void onTimeChanged(TimerEngine engine, long time, boolean fromUser) {
+            // the changes from the other threads are coalesced and applied from the latest state
+            if (isViewThread())
+                updateProgress(time, fromUser);
+            else postSync();
+        }
+
+        @Override
+        public void onStartTrackingTouch(TimerEngine engine) {
+            cancelFinish();
+
+            mListeners.dispatchStartTrackingTouch(TimerView.this);
+        }
+
+        @Override
+        public void onStopTrackingTouch(TimerEngine engine) {
+            dispatchUserChange(true);
+            scheduleFinish();
+            mTickSecond = mEngine.getCurTime() / 1000;
+
+            mListeners.dispatchStopTrackingTouch(TimerView.this);
+        }
+
+        @Override
+        public void onPlayStarted(TimerEngine engine) {
+            if (!isViewThread()) {
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onPlayStarted(mEngine);
+                    }
+                });
+                return;
+            }
+
+            mListeners.dispatchPlayStarted(TimerView.this);
+        }
+
+        @Override
+        public void onPlayStopped(TimerEngine engine) {
+            if (!isViewThread()) {
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onPlayStopped(mEngine);
+                    }
+                });
+                return;
+            }
+
+            mListeners.dispatchPlayStopped(TimerView.this);
+        }
+
+        @Override
+        public void onPlayFinished(TimerEngine engine) {
+            final long overshootNanos = engine.getOvershootNanos();
+
+            if (!isViewThread()) {
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        dispatchFinish(overshootNanos);
+                    }
+                });
+                return;
+            }
+
+            dispatchFinish(overshootNanos);
+        }
+    };
+
     public TimerView(Context context) {
         super(context);
         init(context, null);
@@ -268,181 +571,238 @@ public class TimerView extends View {
 
     private void init(Context context, AttributeSet attrs) {
 
-        float density = getResources().getDisplayMetrics().density;
+        mEngine = new TimerEngine(ElapsedRealtimeTimeSource.INSTANCE);
 
+        mStyle = TimerStyle.obtain(context, attrs);
 
-        TypedValue typedValue = new TypedValue();
-        TypedArray a = context.obtainStyledAttributes(typedValue.data, new int[] { R.attr.colorPrimary, R.attr.colorPrimaryDark,
-            R.attr.colorAccent});
+        mTimeFormat = mStyle.timeFormat;
+        mProgressWidth = mStyle.progressWidth;
+        mGrooveWidth = mStyle.grooveWidth;
+        mPlayButtonTriangleSideLength = mStyle.playButtonTriangleSideLength;
+        mBigTextSize = mStyle.bigTextSize;
+        mSmallTextSize = mStyle.smallTextSize;
+        mEnabled = mStyle.enabled;
+        mCountdown = mStyle.countdown;
+        mCacheStaticLayers = mStyle.cacheStaticLayers;
+        mDigitAtlasEnabled = mStyle.digitAtlas;
+        if (mStyle.metricsEnabled)
+            mMetrics = new TimerViewMetrics();
 
-        int grooveColor = a.getColor(1, ContextCompat.getColor(context, R.color.colorPrimaryDark));
-        int progressColor = a.getColor(2, ContextCompat.getColor(context, R.color.colorAccent));
+        mPlayButtonTint = mStyle.playButtonTint;
+        mPauseButtonTint = mStyle.pauseButtonTint;
+        mFinishIconTint = mStyle.finishIconTint;
 
-        int bigTextColor = a.getColor(2, ContextCompat.getColor(context, R.color.colorAccent));
-        int smallTextColor = a.getColor(2, ContextCompat.getColor(context, R.color.colorAccent));
+        Resources resources = getResources();
 
-        int backColor = a.getColor(0, ContextCompat.getColor(context, R.color.colorPrimary));
+        mPlayIcon = mStyle.newPlayIcon(resources);
+        if (mPlayIcon != null) {
+            int playIconHalfWidth = mPlayIcon.getIntrinsicWidth() / 2;
+            int playIconHalfHeight = mPlayIcon.getIntrinsicHeight() / 2;
 
-        int playButtonTint = a.getColor(2, ContextCompat.getColor(context, R.color.colorAccent));
-        int pauseButtonTint = a.getColor(2, ContextCompat.getColor(context, R.color.colorAccent));
-        int finishIconTint = a.getColor(2, ContextCompat.getColor(context, R.color.colorAccent));
+            mPlayIcon.setBounds(-playIconHalfWidth, -playIconHalfHeight, playIconHalfWidth,
+                    playIconHalfHeight);
 
-        a.recycle();
+            if (mStyle.playIconFilter != null)
+                mPlayIcon.setColorFilter(mStyle.playIconFilter);
+        }
 
-        mProgressWidth = (int) (mProgressWidth * density);
-        mGrooveWidth = (int) (mGrooveWidth * density);
-        mBigTextSize = (int) (mBigTextSize * density);
-        mSmallTextSize = (int) (mSmallTextSize * density);
+        mPauseIcon = mStyle.newPauseIcon(resources);
+        if (mPauseIcon != null) {
+            int iconHalfWidth = mPauseIcon.getIntrinsicWidth() / 2;
+            int iconHalfHeight = mPauseIcon.getIntrinsicHeight() / 2;
 
-        if (attrs != null) {
-            // Attribute initialization
-            final TypedArray b = context.obtainStyledAttributes(attrs,
-                    R.styleable.TimerView, 0, 0);
+            mPauseIcon.setBounds(-iconHalfWidth, -iconHalfHeight, iconHalfWidth,
+                    iconHalfHeight);
 
-            if (b.hasValue(R.styleable.TimerView_timeFormat))
-                mTimeFormat = b.getString(R.styleable.TimerView_timeFormat);
+            if (mStyle.pauseIconFilter != null)
+                mPauseIcon.setColorFilter(mStyle.pauseIconFilter);
+        }
 
-            playButtonTint = b.getColor(R.styleable.TimerView_playButtonTint, playButtonTint);
+        mFinishIcon = mStyle.newFinishIcon(resources);
+        if (mFinishIcon != null) {
+            int iconHalfWidth = mFinishIcon.getIntrinsicWidth() / 2;
+            int iconHalfHeight = mFinishIcon.getIntrinsicHeight() / 2;
 
-            mPlayIcon = b.getDrawable(R.styleable.TimerView_playIcon);
-            if (mPlayIcon != null) {
-                int playIconHalfWidth = mPlayIcon.getIntrinsicWidth() / 2;
-                int playIconHalfHeight = mPlayIcon.getIntrinsicHeight() / 2;
+            mFinishIcon.setBounds(-iconHalfWidth, -iconHalfHeight, iconHalfWidth,
+                    iconHalfHeight);
 
-                mPlayIcon.setBounds(-playIconHalfWidth, -playIconHalfHeight, playIconHalfWidth,
-                        playIconHalfHeight);
+            if (mStyle.finishIconFilter != null)
+                mFinishIcon.setColorFilter(mStyle.finishIconFilter);
+        }
 
-                if (b.hasValue(R.styleable.TimerView_playButtonTint)) {
-                    mPlayButtonTint=playButtonTint;
-                    mPlayIcon.setColorFilter(new PorterDuffColorFilter(mPlayButtonTint, PorterDuff.Mode.SRC_ATOP));
-                }
-            }
+        mBackgroundDrawable = mStyle.newBackgroundDrawable(resources);
 
-            pauseButtonTint = b.getColor(R.styleable.TimerView_pauseButtonTint, pauseButtonTint);
+        mEngine.setAllowMoveForward(mStyle.allowMoveForward);
+        mEngine.setAllowMoveBackward(mStyle.allowMoveBackward);
+        mEngine.setFullTime(mStyle.fullTime);
+        // range check
+        mEngine.setCurTime(mStyle.curTime);
+        mEngine.setListener(mEngineListener);
 
-            mPauseIcon = b.getDrawable(R.styleable.TimerView_pauseIcon);
-            if (mPauseIcon != null) {
-                int playIconHalfWidth = mPauseIcon.getIntrinsicWidth() / 2;
-                int playIconHalfHeight = mPauseIcon.getIntrinsicHeight() / 2;
+        mTimeFormatter = new TimeFormatter(mTimeFormat);
+        formatCurTime();
 
-                mPauseIcon.setBounds(-playIconHalfWidth, -playIconHalfHeight, playIconHalfWidth,
-                        playIconHalfHeight);
+        mRealProgressSweep = mEngine.convertTimeToSweep(mEngine.getCurTime());
+        mVisibleProgressSweep = mRealProgressSweep;
+        mSweepSpring.snapTo(mVisibleProgressSweep);
 
-                if (b.hasValue(R.styleable.TimerView_pauseButtonTint)) {
-                    mPauseButtonTint=pauseButtonTint;
-                    mPauseIcon.setColorFilter(new PorterDuffColorFilter(mPauseButtonTint, PorterDuff.Mode.SRC_ATOP));
-                }
-            }
+        bindStylePaints();
+        mPauseShapePaint = new Paint(mStyle.pauseShapePaint);
+        mFinishShapePaint = new Paint(mStyle.finishShapePaint);
 
-            finishIconTint = b.getColor(R.styleable.TimerView_finishIconTint, finishIconTint);
+        TimerShapes shapes = TimerShapes.obtain(mFullRadius, mPlayButtonTriangleSideLength);
+        mPlayTriangle = shapes.playTriangle;
+        mPauseShape = shapes.pauseShape;
+        mFinishShape = shapes.finishShape;
 
-            mFinishIcon = b.getDrawable(R.styleable.TimerView_finishIcon);
-            if (mFinishIcon != null) {
-                int finishIconHalfWidth = mFinishIcon.getIntrinsicWidth() / 2;
-                int finishIconHalfHeight = mFinishIcon.getIntrinsicHeight() / 2;
+        measureTextBounds();
+    }
 
-                mFinishIcon.setBounds(-finishIconHalfWidth, -finishIconHalfHeight, finishIconHalfWidth,
-                        finishIconHalfHeight);
+    /**
+     * Load the icon set by resource id for the current size. The tint is baked into the bitmap
+     *
+     * @return the icon centered around 0, or null if the view isn't laid out yet
+     */
+    @Nullable
+    private Drawable loadIcon(@DrawableRes int resId, @Nullable Integer tint) {
+        if (!mHasGeometry || mFullRadius <= 0)
+            return null;
 
-                if (b.hasValue(R.styleable.TimerView_finishIconTint)) {
-                    mFinishIconTint = finishIconTint;
-                    mFinishIcon.setColorFilter(new PorterDuffColorFilter(mFinishIconTint, PorterDuff.Mode.SRC_ATOP));
-                }
-            }
+        Drawable icon = IconCache.get(getContext(), resId, mFullRadius, tint);
 
-            mBackgroundDrawable = b.getDrawable(R.styleable.TimerView_backgroundCircleDrawable);
+        int iconHalfWidth = icon.getIntrinsicWidth() / 2;
+        int iconHalfHeight = icon.getIntrinsicHeight() / 2;
 
-            mFullTime = b.getInteger(R.styleable.TimerView_fulltime, mFullTime);
-            mCurTime = b.getInteger(R.styleable.TimerView_curtime, mCurTime);
+        icon.setBounds(-iconHalfWidth, -iconHalfHeight, iconHalfWidth,
+                iconHalfHeight);
 
-            mProgressWidth = (int) b.getDimension(R.styleable.TimerView_progressWidth, mProgressWidth);
-            progressColor = b.getColor(R.styleable.TimerView_progressColor, progressColor);
+        return icon;
+    }
 
-            mGrooveWidth = (int) b.getDimension(R.styleable.TimerView_grooveWidth, mGrooveWidth);
-            grooveColor = b.getColor(R.styleable.TimerView_grooveColor, grooveColor);
+    /**
+     * Reload the icons set by resource id, so that they match the current size
+     */
+    private void loadIcons() {
+        if (mPlayIconRes != 0)
+            mPlayIcon = loadIcon(mPlayIconRes, mPlayButtonTint);
+        if (mPauseIconRes != 0)
+            mPauseIcon = loadIcon(mPauseIconRes, mPauseButtonTint);
+        if (mFinishIconRes != 0)
+            mFinishIcon = loadIcon(mFinishIconRes, mFinishIconTint);
+    }
 
-            mPlayButtonTriangleSideLength = (int) b.getDimension(R.styleable.TimerView_playButtonTriangleSideLength,
-                    mPlayButtonTriangleSideLength);
+    private void requestGeometryUpdate() {
+        if (mEditDepth > 0)
+            mPendingChanges |= CHANGE_GEOMETRY;
+        else updateGeometry();
+    }
 
-            mBigTextSize = (int) b.getDimension(R.styleable.TimerView_bigTextSize, mBigTextSize);
-            mSmallTextSize = (int) b.getDimension(R.styleable.TimerView_smallTextSize, mSmallTextSize);
-            bigTextColor = b.getColor(R.styleable.TimerView_bigTextColor, bigTextColor);
-            smallTextColor = b.getColor(R.styleable.TimerView_smallTextColor, smallTextColor);
+    private void requestTextMeasure() {
+        if (mEditDepth > 0)
+            mPendingChanges |= CHANGE_TEXT_BOUNDS;
+        else measureTextBounds();
+    }
 
-            backColor = b.getColor(R.styleable.TimerView_backgroundCircleColor, backColor);
+    private void requestIconsLoad() {
+        if (mEditDepth > 0)
+            mPendingChanges |= CHANGE_ICONS;
+        else loadIcons();
+    }
 
-            mAllowMoveForward = b.getBoolean(R.styleable.TimerView_allowMoveForward, mAllowMoveForward);
-            mAllowMoveBackward = b.getBoolean(R.styleable.TimerView_allowMoveBackward, mAllowMoveBackward);
+    private void requestInvalidate() {
+        if (mEditDepth > 0)
+            mPendingChanges |= CHANGE_APPEARANCE;
+        else invalidate();
+    }
 
-            mEnabled = b.getBoolean(R.styleable.TimerView_enabled, mEnabled);
+    /**
+     * Finish the edit, running every recalculation requested during it once
+     */
+    private void applyEdit() {
+        if (--mEditDepth > 0)
+            return;
 
-            mCountdown = b.getBoolean(R.styleable.TimerView_countdown, mCountdown);
+        int changes = mPendingChanges;
+        mPendingChanges = 0;
 
-            b.recycle();
-        }
+        // updateGeometry() reloads the icons itself
+        if ((changes & CHANGE_GEOMETRY) != 0)
+            updateGeometry();
+        else if ((changes & CHANGE_ICONS) != 0)
+            loadIcons();
 
-        // range check
-        mCurTime = (mCurTime > mFullTime) ? mFullTime : mCurTime;
+        if ((changes & CHANGE_TEXT_BOUNDS) != 0)
+            measureTextBounds();
 
-        formatCurTime();
+        if (changes != 0)
+            invalidate();
+    }
 
-        mRealProgressSweep = (float) mCurTime / valuePerDegree();
-        mVisibleProgressSweep = mRealProgressSweep;
+    private void bindStylePaints() {
+        mGroovePaint = mStyle.groovePaint;
+        mBackPaint = mStyle.backPaint;
+        mProgressPaint = mStyle.progressPaint;
+        mBigTextPaint = mStyle.bigTextPaint;
+        mSmallTextPaint = mStyle.smallTextPaint;
+        mPlayTrianglePaint = mStyle.playTrianglePaint;
+    }
 
-        mGroovePaint = new Paint();
-        mGroovePaint.setColor(grooveColor);
-        mGroovePaint.setAntiAlias(true);
-        mGroovePaint.setStyle(Paint.Style.STROKE);
-        mGroovePaint.setStrokeWidth(mGrooveWidth);
-
-        mBackPaint = new Paint();
-        mBackPaint.setColor(backColor);
-        mBackPaint.setAntiAlias(true);
-        mBackPaint.setStyle(Paint.Style.FILL);
-
-        mProgressPaint = new Paint();
-        mProgressPaint.setColor(progressColor);
-        mProgressPaint.setAntiAlias(true);
-        mProgressPaint.setStyle(Paint.Style.STROKE);
-        mProgressPaint.setStrokeWidth(mProgressWidth);
-
-        mBigTextPaint = new Paint();
-        mBigTextPaint.setColor(bigTextColor);
-        mBigTextPaint.setAntiAlias(true);
-        mBigTextPaint.setStyle(Paint.Style.FILL);
-        mBigTextPaint.setTextSize(mBigTextSize);
+    /**
+     * Make the style private to this view before changing any of its paints, as it may be shared with the other views
+     */
+    private void forkStyle() {
+        if (mOwnsStyle)
+            return;
 
-        mSmallTextPaint = new Paint();
-        mSmallTextPaint.setColor(smallTextColor);
-        mSmallTextPaint.setAntiAlias(true);
-        mSmallTextPaint.setStyle(Paint.Style.FILL);
-        mSmallTextPaint.setTextSize(mSmallTextSize);
+        mStyle = mStyle.copy();
+        mOwnsStyle = true;
+        bindStylePaints();
+    }
+
+    /**
+     * Set the size-dependent stroke widths of the shape paints here rather than in onDraw
+     */
+    private void bindShapeStrokeWidths() {
+        mPauseShapePaint.setStrokeWidth(mPauseShapeStrokeWidth);
+        mFinishShapePaint.setStrokeWidth(mFinishShapeStrokeWidth);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
 
-        mPlayTrianglePaint = new Paint();
-        mPlayTrianglePaint.setColor(playButtonTint);
-        mPlayTrianglePaint.setAntiAlias(true);
-        mPlayTrianglePaint.setStyle(Paint.Style.FILL);
+        updateGeometry();
+    }
 
-        mPauseShapePaint = new Paint();
-        mPauseShapePaint.setColor(pauseButtonTint);
-        mPauseShapePaint.setAntiAlias(true);
-        mPauseShapePaint.setStyle(Paint.Style.STROKE);
-        mPauseShapePaint.setStrokeWidth(mFullRadius /PAUSE_SHAPE_STROKE_WIDTH_FACTOR);
+    @Override
+    public void setPadding(int left, int top, int right, int bottom) {
+        super.setPadding(left, top, right, bottom);
 
-        mFinishShapePaint = new Paint();
-        mFinishShapePaint.setColor(finishIconTint);
-        mFinishShapePaint.setAntiAlias(true);
-        mFinishShapePaint.setStyle(Paint.Style.STROKE);
-        mFinishShapePaint.setStrokeWidth(mFullRadius /FINISH_SHAPE_STROKE_WIDTH_FACTOR);
+        // the geometry depends on the padding, and the size may stay the same
+        requestGeometryUpdate();
     }
 
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
     @Override
-    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+    public void setPaddingRelative(int start, int top, int end, int bottom) {
+        super.setPaddingRelative(start, top, end, bottom);
+
+        requestGeometryUpdate();
+    }
 
-        final int width = getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec);
-        final int height = getDefaultSize(getSuggestedMinimumHeight(), heightMeasureSpec);
+    /**
+     * Recalculate the arcs and the shapes for the current size of the view. Only needed when the size or
+     * one of the widths changes, not on every measure pass
+     */
+    private void updateGeometry() {
+
+        final int width = getWidth();
+        final int height = getHeight();
         final int min = Math.min(width, height);
 
+        if (min == 0)
+            return; // not laid out yet, onSizeChanged() will come
+
         mTranslateX = (int) (width * 0.5f);
         mTranslateY = (int) (height * 0.5f);
 
@@ -457,18 +817,16 @@ public class TimerView extends View {
 
         mBackRect.set(height / 2 - mFullRadius, width / 2 - mFullRadius, height / 2 + mFullRadius, width / 2 + mFullRadius);
 
-        mBigTextPaint.getTextBounds(formatTime(0), 0, mCurFormattedTime.length(), mBigTextRect);
-        mSmallTextPaint.getTextBounds(formatTime(0), 0, mCurFormattedTime.length(), mSmallTextRect);
+        TimerShapes shapes = TimerShapes.obtain(mFullRadius, mPlayButtonTriangleSideLength);
+        mPlayTriangle = shapes.playTriangle;
+        mPauseShape = shapes.pauseShape;
+        mPauseShapeStrokeWidth = shapes.pauseShapeStrokeWidth;
+        mFinishShape = shapes.finishShape;
+        mFinishShapeStrokeWidth = shapes.finishShapeStrokeWidth;
+        bindShapeStrokeWidths();
+        mHasGeometry = true;
 
-        mPlayTriangle = getEquilateralTriangle(mPlayButtonTriangleSideLength!=-1?
-                mPlayButtonTriangleSideLength:(int) (mFullRadius /PLAY_TRIANGLE_SIZE_FACTOR));
-
-        mPauseShape = getPauseShape((int) (mFullRadius /PAUSE_SHAPE_SIZE_FACTOR));
-        mPauseShapePaint.setStrokeWidth(mFullRadius /PAUSE_SHAPE_STROKE_WIDTH_FACTOR);
-
-        float finishShapeStokeWidth = mFullRadius /FINISH_SHAPE_STROKE_WIDTH_FACTOR;
-        mFinishShape = getFinishShape((int) (mFullRadius /FINISH_SHAPE_SIZE_FACTOR), finishShapeStokeWidth);
-        mFinishShapePaint.setStrokeWidth(finishShapeStokeWidth);
+        loadIcons();
 
         if (mBackgroundDrawable!=null) {
             int backHalfWidth = (min - getPaddingLeft()) / 2;
@@ -478,7 +836,7 @@ public class TimerView extends View {
                     backHalfHeight);
         }
 
-        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        invalidateStaticLayer();
     }
 
 
@@ -494,40 +852,42 @@ public class TimerView extends View {
     @Override
     protected void onDraw(Canvas canvas) {
 
-        if (mBackgroundDrawable!=null) {
-            canvas.translate(mTranslateX, mTranslateY);
-            mBackgroundDrawable.draw(canvas);
-            canvas.translate(-mTranslateX,-mTranslateY);
-        }
-        else canvas.drawArc(mBackRect, ANGLE_OFFSET, 360, false, mBackPaint);
+        long drawStartNanos = mMetrics != null ? System.nanoTime() : 0;
 
+        rememberDrawnFrame();
 
-        if (mIsPlaying) {
+        // draw the background and the groove arc
+        if (mCacheStaticLayers)
+            drawStaticLayersCached(canvas);
+        else drawStaticLayers(canvas);
+
+        // one snapshot for the whole frame, the commands may come from other threads meanwhile
+        TimerState state = mEngine.getState();
+        boolean isPlaying = state.isPlaying();
+        boolean isTrackingTouch = state.isTrackingTouch();
+        boolean isFinished = state.isFinished();
+
+        if (isPlaying) {
 
-            int xPos = mTranslateX - mBigTextRect.width() / 2;
             int yPos = (int) ((mArcRect.centerY()) - ((mBigTextPaint.descent() + mBigTextPaint.ascent()) / 2));
 
-            canvas.drawText(mCurFormattedTime, xPos, yPos, mBigTextPaint);
-        } else if (mCurTime<mFullTime || mIsTouchProgress) {
+            drawTime(canvas, mBigTextPaint, mBigTextRect, true, yPos);
+        } else if (!isFinished || isTrackingTouch) {
 
-            int xPos = mTranslateX - mSmallTextRect.width() / 2;
             int yPos = (int) (mTranslateY+ mFullRadius *0.5f - ((mSmallTextPaint.descent() + mSmallTextPaint.ascent()) / 2));
 
-            canvas.drawText(mCurFormattedTime, xPos, yPos, mSmallTextPaint);
+            drawTime(canvas, mSmallTextPaint, mSmallTextRect, false, yPos);
 
         }
 
-        // draw the arc and progress
-        if (mGrooveWidth>0)
-            canvas.drawArc(mArcRect, ANGLE_OFFSET, 360, false, mGroovePaint);
-
+        // draw the progress
         if (mProgressWidth>0)
             canvas.drawArc(mArcRect, ANGLE_OFFSET, mVisibleProgressSweep, false, mProgressPaint);
 
-        if (!mIsPlaying) {
+        if (!isPlaying) {
             canvas.translate(mTranslateX, mTranslateY);
 
-            if (mCurTime<mFullTime || mIsTouchProgress) {
+            if (!isFinished || isTrackingTouch) {
                 if (mPlayIcon!=null)
                     mPlayIcon.draw(canvas);
                 else canvas.drawPath(mPlayTriangle, mPlayTrianglePaint);
@@ -551,97 +911,340 @@ public class TimerView extends View {
             else canvas.drawPath(mPauseShape, mPauseShapePaint);
         }
 
+        if (mMetrics != null)
+            mMetrics.recordDraw(System.nanoTime() - drawStartNanos);
     }
 
-    @Override
-    protected void onAttachedToWindow() {
-        super.onAttachedToWindow();
-
-        mIsAttached=true;
-
-        final Handler handler = new Handler(Looper.getMainLooper());
-        handler.post(new Runnable() {
-            @Override
-            public void run() {
+    /**
+     * Draw the formatted time centered horizontally
+     */
+    private void drawTime(Canvas canvas, Paint paint, Rect textRect, boolean big, int yPos) {
 
-                if (mIsPlaying && !mIsTouchProgress)
-                    incrementTime();
-                mPreviousSystemTime=System.currentTimeMillis();
+        if (mDigitAtlasEnabled) {
+            DigitAtlas atlas = getDigitAtlas(paint, big);
 
-                if (mIsAttached)
-                    handler.post(this);
+            if (atlas.canDraw(mCurFormattedTime, mCurFormattedTimeLength)) {
+                // the digits have the same advance, so the text is centered by its actual width without jitter
+                float width = atlas.measure(mCurFormattedTime, mCurFormattedTimeLength);
+                atlas.draw(canvas, mCurFormattedTime, mCurFormattedTimeLength, mTranslateX - width / 2, yPos, paint);
+                return;
             }
-        });
+        }
 
+        int xPos = mTranslateX - textRect.width() / 2;
+        canvas.drawText(mCurFormattedTime, 0, mCurFormattedTimeLength, xPos, yPos, paint);
     }
 
-    @Override
-    protected void onDetachedFromWindow() {
-        super.onDetachedFromWindow();
-
-        mIsAttached=false;
-    }
+    /**
+     * Get the digit atlas for the text paint, rendering it if there's none yet or the text size has changed
+     */
+    private DigitAtlas getDigitAtlas(Paint paint, boolean big) {
+        DigitAtlas atlas = big ? mBigDigitAtlas : mSmallDigitAtlas;
 
-    private void incrementTime() {
-        long timeDiff = System.currentTimeMillis()-mPreviousSystemTime;
+        if (atlas == null || !atlas.matches(paint)) {
+            if (atlas != null)
+                atlas.release();
 
-        updateProgress((int) (mCurTime+timeDiff), false);
-        if (mCurTime>mFullTime) {
-            mCurTime=mFullTime;
-            formatCurTime();
-            stop();
+            atlas = new DigitAtlas(paint, mTimeSeparators);
 
-            if (mOnTimerViewChangeListener!=null)
-                mOnTimerViewChangeListener.onPlayFinished(this);
+            if (big) mBigDigitAtlas = atlas;
+            else mSmallDigitAtlas = atlas;
         }
+        return atlas;
     }
 
-    private void formatCurTime() {
-        SimpleDateFormat sdfDate = new SimpleDateFormat(mTimeFormat);
-        sdfDate.setTimeZone(TimeZone.getTimeZone("UTC"));
-        mCurFormattedTime = sdfDate.format(new Date(mCountdown?(mFullTime-mCurTime):mCurTime));
+    private void releaseDigitAtlases() {
+        if (mBigDigitAtlas != null) {
+            mBigDigitAtlas.release();
+            mBigDigitAtlas = null;
+        }
+        if (mSmallDigitAtlas != null) {
+            mSmallDigitAtlas.release();
+            mSmallDigitAtlas = null;
+        }
     }
 
-    private String formatTime(long time) {
-        SimpleDateFormat sdfDate = new SimpleDateFormat(mTimeFormat);
-        return sdfDate.format(new Date(time));
+    /**
+     * Draw the parts of the view which don't change while the timer is playing
+     */
+    private void drawStaticLayers(Canvas canvas) {
+        if (mBackgroundDrawable!=null) {
+            canvas.translate(mTranslateX, mTranslateY);
+            mBackgroundDrawable.draw(canvas);
+            canvas.translate(-mTranslateX,-mTranslateY);
+        }
+        else canvas.drawArc(mBackRect, ANGLE_OFFSET, 360, false, mBackPaint);
+
+        if (mGrooveWidth>0)
+            canvas.drawArc(mArcRect, ANGLE_OFFSET, 360, false, mGroovePaint);
     }
 
-    @Override
+    /**
+     * Draw the static parts from mStaticLayer, rendering it first if it's out of date
+     */
+    private void drawStaticLayersCached(Canvas canvas) {
+        int width = getWidth();
+        int height = getHeight();
+        if (width <= 0 || height <= 0)
+            return;
+
+        if (mStaticLayer == null || mStaticLayer.getWidth() != width || mStaticLayer.getHeight() != height) {
+            releaseStaticLayer();
+            mStaticLayer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mStaticLayerCanvas = new Canvas(mStaticLayer);
+        }
+
+        if (!mIsStaticLayerValid) {
+            mStaticLayer.eraseColor(Color.TRANSPARENT);
+            drawStaticLayers(mStaticLayerCanvas);
+            mIsStaticLayerValid = true;
+        }
+
+        canvas.drawBitmap(mStaticLayer, 0, 0, null);
+    }
+
+    /**
+     * Mark mStaticLayer as out of date, so that it's rendered again on the next onDraw
+     */
+    private void invalidateStaticLayer() {
+        mIsStaticLayerValid = false;
+    }
+
+    private void releaseStaticLayer() {
+        if (mStaticLayer != null) {
+            mStaticLayer.recycle();
+            mStaticLayer = null;
+            mStaticLayerCanvas = null;
+        }
+        mIsStaticLayerValid = false;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+
+        mIsAttached=true;
+
+        ViewTreeObserver observer = getViewTreeObserver();
+        observer.addOnScrollChangedListener(mScrollChangedListener);
+        observer.addOnGlobalLayoutListener(mGlobalLayoutListener);
+
+        updateOnScreen();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        mIsAttached=false;
+
+        ViewTreeObserver observer = getViewTreeObserver();
+        observer.removeOnScrollChangedListener(mScrollChangedListener);
+        observer.removeOnGlobalLayoutListener(mGlobalLayoutListener);
+
+        mIsOnScreen = false;
+        dispatchUserChange(true);
+        cancelTick();
+        releaseStaticLayer();
+    }
+
+    @Override
+    protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+
+        updateOnScreen();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+
+        updateOnScreen();
+    }
+
+    /**
+     * Suspend the ticking when the view leaves the screen, and catch up with the time when it's back
+     */
+    void updateOnScreen() {
+        boolean isOnScreen = mHost != null ? mHost.isSceneVisible()
+                : mIsAttached && getWindowVisibility() == VISIBLE && isShown() && getGlobalVisibleRect(mVisibleRect);
+
+        if (isOnScreen == mIsOnScreen)
+            return;
+
+        mIsOnScreen = isOnScreen;
+
+        if (isOnScreen) {
+            // jump straight to the current time, the missed ticks don't matter
+            mEngine.tick();
+            dispatchSecondTick();
+            mSweepSpring.snapTo(mRealProgressSweep);
+            mVisibleProgressSweep = mRealProgressSweep;
+            invalidate();
+
+            scheduleTick();
+        } else cancelTick();
+    }
+
+    /**
+     * Start receiving the ticks from the shared ticker, unless already receiving or there's nothing to tick
+     */
+    private void scheduleTick() {
+        wakeUp();
+
+        if (mIsTickScheduled || !mIsOnScreen || (!mEngine.isPlaying() && !mSweepSpring.isMoving()))
+            return;
+
+        TimerTicker.getInstance().register(mTickClient);
+        mIsTickScheduled = true;
+    }
+
+    /**
+     * Stop receiving the ticks, if receiving
+     */
+    private void cancelTick() {
+        wakeUp();
+
+        if (!mIsTickScheduled)
+            return;
+
+        TimerTicker.getInstance().unregister(mTickClient);
+        mIsTickScheduled = false;
+
+        if (mMetrics != null)
+            mMetrics.resetTickSequence();
+    }
+
+    /**
+     * Stop receiving the ticks until the text or the arc changes next time, if that's more than a couple
+     * of frames away, so that the long timers don't redraw the same frame at the full frame rate
+     */
+    private void sleepUntilNextChange() {
+        long delay = getNextChangeDelay();
+
+        if (delay < MIN_SLEEP_MILLIS)
+            return;
+
+        cancelTick();
+        mIsSleeping = true;
+        mHandler.postDelayed(mWakeUpRunnable, delay);
+    }
+
+    /**
+     * Cancel the sleep, if sleeping
+     */
+    private void wakeUp() {
+        if (!mIsSleeping)
+            return;
+
+        mHandler.removeCallbacks(mWakeUpRunnable);
+        mIsSleeping = false;
+    }
+
+    /**
+     * Get the time in milliseconds until the formatted text changes or the arc grows by one pixel,
+     * whichever comes first
+     */
+    private long getNextChangeDelay() {
+        long curTime = mEngine.getCurTime();
+        long fullTime = mEngine.getFullTime();
+        long delay = fullTime - curTime;
+
+        long resolution = mTimeFormatter.getResolution();
+        if (resolution != Long.MAX_VALUE) {
+            // the countdown text goes down, so it changes right after the remaining time crosses a boundary
+            long textDelay = mCountdown ? (fullTime - curTime) % resolution + 1 : resolution - curTime % resolution;
+            delay = Math.min(delay, textDelay);
+        }
+
+        if (mListeners.hasListeners(EVENT_TICK))
+            delay = Math.min(delay, 1000 - curTime % 1000);
+
+        if (mArcRadius <= 0)
+            return 0;
+
+        // the frame about to be drawn is the one to count from
+        float sweep = isFrameChanged() ? mVisibleProgressSweep : mDrawnProgressSweep;
+        double pixelTime = (sweep + getPixelSweep()) / 360.0 * fullTime;
+        delay = Math.min(delay, (long) Math.ceil(pixelTime) - curTime);
+
+        return Math.max(delay, 0);
+    }
+
+    private void formatCurTime() {
+        TimerState state = mEngine.getState();
+        long curTime = state.getCurTime();
+        mCurFormattedTimeLength = mTimeFormatter.format(mCountdown?(state.getFullTime()-curTime):curTime);
+        mCurFormattedTime = mTimeFormatter.getChars();
+    }
+
+    /**
+     * Measure the text bounds of the zero time, so that the text position doesn't jitter while the time changes
+     */
+    private void measureTextBounds() {
+        int length = mTimeFormatter.format(0);
+        mBigTextPaint.getTextBounds(mTimeFormatter.getChars(), 0, length, mBigTextRect);
+        mSmallTextPaint.getTextBounds(mTimeFormatter.getChars(), 0, length, mSmallTextRect);
+
+        String separators = collectSeparators(mTimeFormatter.getChars(), length);
+        if (!separators.equals(mTimeSeparators)) {
+            mTimeSeparators = separators;
+            releaseDigitAtlases();
+        }
+
+        // the buffer is shared, so restore the current time in it
+        formatCurTime();
+    }
+
+    /**
+     * Get the distinct non-digit chars of the formatted time
+     */
+    private static String collectSeparators(char[] chars, int length) {
+        StringBuilder separators = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            if ((c < '0' || c > '9') && separators.indexOf(String.valueOf(c)) == -1)
+                separators.append(c);
+        }
+        // the elapsed days can get negative
+        if (separators.indexOf("-") == -1)
+            separators.append('-');
+        return separators.toString();
+    }
+
+    @Override
     public boolean onTouchEvent(MotionEvent event) {
         if (mEnabled) {
-            this.getParent().requestDisallowInterceptTouchEvent(true);
+            // a view hosted by TimerSurfaceView has no parent, the host handles the interception
+            ViewParent parent = getParent();
+            if (parent != null)
+                parent.requestDisallowInterceptTouchEvent(true);
 
             switch (event.getAction()) {
                 case MotionEvent.ACTION_DOWN:
-                    mThisTouchUpdateTimes = 0;
-                    mTimeBeforeTouch = mCurTime;
 //					updateOnTouch(event);
-                    if (touchHitsArc(event) && (mAllowMoveBackward || mAllowMoveForward)) {
-                        mIsTouchProgress=true;
-                        if (mOnTimerViewChangeListener != null)
-                            mOnTimerViewChangeListener.onStartTrackingTouch(this);
+                    if (touchHitsArc(event) && (mEngine.isAllowMoveBackward() || mEngine.isAllowMoveForward())) {
+                        mEngine.startTrackingTouch();
                         updateOnTouch(event);
                     }
                     break;
                 case MotionEvent.ACTION_MOVE:
-                    if (mIsTouchProgress)
+                    if (mEngine.isTrackingTouch())
                         updateOnTouch(event);
                     break;
                 case MotionEvent.ACTION_UP:
-                    if (!mIsTouchProgress) {
-                        if (touchHitsInner(event) && mCurTime<mFullTime) {
-                            if (mIsPlaying) stop(); else play();
+                    if (!mEngine.isTrackingTouch()) {
+                        if (touchHitsInner(event) && mEngine.getCurTime()<mEngine.getFullTime()) {
+                            if (mEngine.isPlaying()) stop(); else play();
                         }
                     }
                 case MotionEvent.ACTION_CANCEL:
-                    if (mIsTouchProgress) {
-                        mIsTouchProgress=false;
-                        if (mOnTimerViewChangeListener != null)
-                            mOnTimerViewChangeListener.onStopTrackingTouch(this);
+                    if (mEngine.isTrackingTouch()) {
+                        mEngine.stopTrackingTouch();
                     }
                     setPressed(false);
-                    this.getParent().requestDisallowInterceptTouchEvent(false);
+                    if (parent != null)
+                        parent.requestDisallowInterceptTouchEvent(false);
                     break;
             }
             return true;
@@ -649,18 +1252,84 @@ public class TimerView extends View {
         return false;
     }
 
+    /**
+     * Start playing. Can be called from any thread
+     */
     public void play() {
-        if (!mIsPlaying && mOnTimerViewChangeListener!=null)
-            mOnTimerViewChangeListener.onPlayStarted(this);
-        mPreviousSystemTime=System.currentTimeMillis();
-        mIsPlaying=true;
+        mEngine.play();
+        syncWithEngine();
     }
 
+    /**
+     * Stop playing. Can be called from any thread
+     */
     public void stop() {
-        if (mIsPlaying && mOnTimerViewChangeListener!=null && mCurTime<mFullTime)
-            mOnTimerViewChangeListener.onPlayStopped(this);
-        mIsPlaying=false;
+        mEngine.stop();
+        syncWithEngine();
+    }
+
+    private boolean isViewThread() {
+        return Looper.myLooper() == mHandler.getLooper();
+    }
+
+    /**
+     * Bring the progress, the ticking and the finish up to date with the engine state, right away on the view
+     * thread, or on its next message otherwise
+     */
+    private void syncWithEngine() {
+        if (!isViewThread()) {
+            postSync();
+            return;
+        }
+
+        mHandler.removeCallbacks(mSyncRunnable);
+
+        TimerState state = mEngine.getState();
+        updateProgress(state.getCurTime(), false);
+        mTickSecond = state.getCurTime() / 1000;
+
+        if (state.isPlaying())
+            scheduleTick();
+        else if (!mSweepSpring.isMoving())
+            cancelTick();
+
+        scheduleFinish();
+        requestInvalidate();
+    }
+
+    private void postSync() {
+        mHandler.removeCallbacks(mSyncRunnable);
+        mHandler.post(mSyncRunnable);
+    }
+
+    private void dispatchFinish(long overshootNanos) {
+        if (mMetrics != null)
+            mMetrics.recordFinish(overshootNanos);
+
+        cancelFinish();
         invalidate();
+
+        mListeners.dispatchPlayFinished(this, overshootNanos / 1000000L);
+    }
+
+    /**
+     * Post the finish at the deadline of the current play, replacing the previous one. The deadline is
+     * kept while the view is detached or invisible, so onPlayFinished comes in time anyway
+     */
+    private void scheduleFinish() {
+        mHandler.removeCallbacks(mFinishRunnable);
+
+        TimerState state = mEngine.getState();
+        if (!state.isPlaying() || state.isTrackingTouch())
+            return;
+
+        long delayNanos = -mEngine.getOvershootNanos();
+        long delayMillis = delayNanos > 0 ? (delayNanos + 999999L) / 1000000L : 0;
+        mHandler.postAtTime(mFinishRunnable, SystemClock.uptimeMillis() + delayMillis);
+    }
+
+    private void cancelFinish() {
+        mHandler.removeCallbacks(mFinishRunnable);
     }
 
     private boolean touchHitsArc(MotionEvent event) {
@@ -690,6 +1359,81 @@ public class TimerView extends View {
     }
 
 
+    @Override
+    public void invalidate() {
+        if (mHost != null)
+            mHost.onSceneInvalidated();
+        else super.invalidate();
+    }
+
+    /**
+     * Start rendering the view by the host on the thread of the looper, which becomes the thread of the view:
+     * its ticks, finish and listeners are run there from now on, and the calls from the other threads are posted
+     * there. Must be called on the main thread. If the view still belongs to the thread of a previous host,
+     * the new thread must not run anything before that one ends
+     */
+    void attachHost(Host host, Looper looper) {
+        synchronized (mHostLock) {
+            if (isViewThread()) {
+                // back on the main thread, so nothing else runs the view right now
+                cancelTick();
+                mIsOnScreen = false;
+                mHandler.removeCallbacksAndMessages(null);
+            }
+
+            mHost = host;
+            mHandler = new Handler(looper);
+        }
+
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                // the paints are used on the host thread now, so they can't be shared with the other views
+                forkStyle();
+                updateOnScreen();
+                syncWithEngine();
+            }
+        });
+    }
+
+    /**
+     * Stop rendering the view by the host, the view gets back to the main thread unless another host has
+     * been attached since. Must be called on the thread of the host, after which that thread must end
+     */
+    void detachHost(Host host) {
+        dispatchUserChange(true);
+        cancelTick();
+        mIsOnScreen = false;
+
+        synchronized (mHostLock) {
+            if (mHost != host)
+                return; // the new host takes the view over once this thread ends
+
+            mHandler.removeCallbacksAndMessages(null);
+            mHost = null;
+            mHandler = new Handler(Looper.getMainLooper());
+        }
+
+        // keeps the finish coming while the host is detached
+        syncWithEngine();
+    }
+
+    /**
+     * The host rendering the view on its own thread instead of the view hierarchy, see TimerSurfaceView
+     */
+    interface Host {
+
+        /**
+         * Whether the rendered frames are visible, the view doesn't tick while they aren't
+         */
+        boolean isSceneVisible();
+
+        /**
+         * Called instead of invalidating the view, the host has to draw it on the next frame
+         */
+        void onSceneInvalidated();
+    }
+
     @Override
     protected void drawableStateChanged() {
         super.drawableStateChanged();
@@ -699,131 +1443,175 @@ public class TimerView extends View {
 
     private void updateOnTouch(MotionEvent event) {
         setPressed(true);
-        mTouchAngle = convertTouchEventPointToAngle(event.getX(), event.getY());
-        int progress = convertAngleToProgress(mTouchAngle);
-        updateProgress(progress, true);
-    }
 
-    private double convertTouchEventPointToAngle(float xPos, float yPos) {
-        // transform touch coordinate into component coordinate
-        float x = xPos - mTranslateX;
-        float y = yPos - mTranslateY;
+        // fast drags come batched, walk all the samples so that the crossings of 12 o'clock aren't missed
+        final int historySize = event.getHistorySize();
+        for (int i = 0; i < historySize; i++) {
+            mTouchAngle = convertTouchEventPointToAngle(event.getHistoricalX(i), event.getHistoricalY(i));
+            mEngine.updateFromUser(mEngine.convertAngleToTime(mTouchAngle));
+        }
 
-        double angle = Math.toDegrees(Math.atan2(y, x) + (Math.PI / 2));
-        angle = (angle < 0) ? (angle + 360) : angle;
-//		System.out.printf("(%f, %f) %f\n", x, y, angle);
-        return angle;
+        mTouchAngle = convertTouchEventPointToAngle(event.getX(), event.getY());
+        mEngine.updateFromUser(mEngine.convertAngleToTime(mTouchAngle));
     }
 
-    private int convertAngleToProgress(double angle) {
-        return (int) Math.round(valuePerDegree() * angle);
-    }
+    /**
+     * Notify the listeners about the time changed by the user. The rate-limited ones whose interval hasn't
+     * passed yet are notified later, unless forced
+     */
+    private void dispatchUserChange(boolean force) {
+        mIsUserChangePending = false;
+        removeUserChangeDispatch();
 
-    private float valuePerDegree() {
-        return (float) (mFullTime) / 360.0f;
+        long delay = mListeners.dispatchTimeChangedByUser(this, mEngine.getCurTime(), SystemClock.uptimeMillis(),
+                force);
+        if (delay > 0) {
+            if (mHost != null)
+                mHandler.postDelayed(mUserChangeDispatcher, delay);
+            else postDelayed(mUserChangeDispatcher, delay);
+        }
     }
 
+    /**
+     * Cancel the posted dispatch of the time changed by the user. It's posted to the view, unless the view
+     * is rendered by a host, which isn't attached to a window
+     */
+    private void removeUserChangeDispatch() {
+        if (mHost != null)
+            mHandler.removeCallbacks(mUserChangeDispatcher);
+        else removeCallbacks(mUserChangeDispatcher);
+    }
 
-    private void updateProgress(int progress, boolean fromUser) {
-
-        mThisTouchUpdateTimes++;
-        if (progress == INVALID_VALUE) {
+    /**
+     * Notify the tick listeners if the current time has crossed a whole second since the last notification
+     */
+    private void dispatchSecondTick() {
+        if (!mListeners.hasListeners(EVENT_TICK))
             return;
-        }
 
-        if (fromUser && ((progress> mTimeBeforeTouch && !mAllowMoveForward) ||
-                (progress< mTimeBeforeTouch && !mAllowMoveBackward)))
+        long time = mEngine.getCurTime();
+        long second = time / 1000;
+        if (second == mTickSecond)
             return;
 
-        // record previous and current progress change
-        if (mThisTouchUpdateTimes == 1) {
-            mCurTime = progress;
-            mPreviousTime = progress;
-        } else {
-            mPreviousTime = mCurTime;
-            mCurTime = progress;
-        }
+        mTickSecond = second;
+        mListeners.dispatchTick(this, time);
+    }
 
-        if (fromUser) {
-            int quater=mFullTime/4;
+    private double convertTouchEventPointToAngle(float xPos, float yPos) {
+        // transform touch coordinate into component coordinate
+        return TimerEngine.convertPointToAngle(xPos - mTranslateX, yPos - mTranslateY);
+    }
 
-            if (mCurTime<=quater && mPreviousTime >=mFullTime-quater) {
-                progress=mFullTime;
-                mCurTime=mFullTime;
-            }
-            else if (mCurTime>=mFullTime-quater && mPreviousTime <=quater) {
-                progress=0;
-                mCurTime=0;
-            }
-        }
+    /**
+     * Redraw the time text and the progress arc for the new time of the engine
+     */
+    private void updateProgress(long progress, boolean fromUser) {
 
         formatCurTime();
 
-        if (mOnTimerViewChangeListener != null && fromUser) {
-            mOnTimerViewChangeListener
-                    .onTimeChangedByUser(this, progress);
+        if (fromUser && mListeners.hasListeners(EVENT_TIME_CHANGED_BY_USER)) {
+            mListeners.markTimeChangedByUser();
+
+            if (!mIsUserChangePending) {
+                mIsUserChangePending = true;
+                removeUserChangeDispatch();
+                if (mHost != null)
+                    mHandler.post(mUserChangeDispatcher);
+                else postOnAnimation(mUserChangeDispatcher);
+            }
         }
 
-        mRealProgressSweep = (float) progress / valuePerDegree();
+        mRealProgressSweep = mEngine.convertTimeToSweep(progress);
 
-        if (fromUser) {
-            if (mSweepAnimation==null) {
-                mSweepAnimation = getAnimation(mVisibleProgressSweep, mRealProgressSweep, true);
-                mSweepAnimation.start();
-            } else {
-                mSweepAnimation.setFloatValues(mVisibleProgressSweep, mRealProgressSweep);
-            }
+        // the user changes are smoothed, the playing ones are continuous anyway
+        if (fromUser || mSweepSpring.isMoving()) {
+            if (!mSweepSpring.isMoving())
+                mSpringFrameNanos = -1;
+            mSweepSpring.setTarget(mRealProgressSweep);
+            scheduleTick();
         } else {
-            if (mSweepAnimation==null)  mVisibleProgressSweep=mRealProgressSweep;
-            else {
-                mSweepAnimation.setFloatValues(mVisibleProgressSweep, mRealProgressSweep);
-            }
+            mSweepSpring.snapTo(mRealProgressSweep);
+            mVisibleProgressSweep = mRealProgressSweep;
         }
 
 
 
 
 
-        invalidate();
+        invalidateIfChanged();
 
     }
 
-    private ValueAnimator getAnimation(float from, float to, boolean smooth) {
+    /**
+     * Invalidate the view only if the text or the visible sweep has changed since the last onDraw. During an edit,
+     * the view is invalidated once when it's applied
+     */
+    private void invalidateIfChanged() {
+        if (mEditDepth > 0) {
+            requestInvalidate();
+            return;
+        }
 
-        ValueAnimator sweepAnimation = ValueAnimator.ofFloat(mVisibleProgressSweep, mRealProgressSweep);
-        sweepAnimation.setDuration(600);
-        if (!smooth) sweepAnimation.setInterpolator(new LinearInterpolator());
-        sweepAnimation.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator valueAnimator) {
-                mVisibleProgressSweep = (float)valueAnimator.getAnimatedValue();
-                invalidate();
-            }
-        });
-        sweepAnimation.addListener(new Animator.AnimatorListener() {
-            @Override
-            public void onAnimationStart(Animator animator) {
+        if (isFrameChanged()) {
+            if (mMetrics != null)
+                mMetrics.recordInvalidate();
+            invalidate();
+        }
+        else {
+            mSkippedRedrawCount++;
+            if (mMetrics != null)
+                mMetrics.recordSkippedRedraw();
+        }
+    }
 
-            }
+    private boolean isFrameChanged() {
 
-            @Override
-            public void onAnimationEnd(Animator animator) {
-                mSweepAnimation = null;
-            }
+        if (mDrawnFormattedTimeLength != mCurFormattedTimeLength)
+            return true;
 
-            @Override
-            public void onAnimationCancel(Animator animator) {
+        for (int i = 0; i < mCurFormattedTimeLength; i++) {
+            if (mDrawnFormattedTime[i] != mCurFormattedTime[i])
+                return true;
+        }
 
-            }
+        if (mArcRadius <= 0)
+            return true;
 
-            @Override
-            public void onAnimationRepeat(Animator animator) {
+        return Math.abs(mVisibleProgressSweep - mDrawnProgressSweep) >= getPixelSweep();
+    }
 
-            }
-        });
+    /**
+     * Get the angle which makes the arc one pixel longer
+     */
+    private float getPixelSweep() {
+        return (float) Math.toDegrees(1.0 / mArcRadius);
+    }
+
+    private void rememberDrawnFrame() {
+        if (mDrawnFormattedTime.length < mCurFormattedTimeLength)
+            mDrawnFormattedTime = new char[mCurFormattedTime.length];
+
+        System.arraycopy(mCurFormattedTime, 0, mDrawnFormattedTime, 0, mCurFormattedTimeLength);
+        mDrawnFormattedTimeLength = mCurFormattedTimeLength;
+        mDrawnProgressSweep = mVisibleProgressSweep;
+    }
+
+    /**
+     * Move the visible sweep along the spring up to the frame time
+     */
+    private void stepSpring(long frameTimeNanos) {
+        // the first frame has nothing to count from, take it as a 60 fps one
+        float seconds = mSpringFrameNanos == -1 ? 1 / 60f : (frameTimeNanos - mSpringFrameNanos) / 1e9f;
+        mSpringFrameNanos = frameTimeNanos;
 
-        return sweepAnimation;
+        mSweepSpring.step(seconds);
+        mVisibleProgressSweep = mSweepSpring.getPosition();
 
+        // the last sub-pixel step to the rest position has to be drawn too
+        if (mSweepSpring.isMoving())
+            invalidateIfChanged();
+        else invalidate();
     }
 
     public interface OnTimerViewChangeListener {
@@ -872,53 +1660,103 @@ public class TimerView extends View {
         void onPlayFinished(TimerView timerView);
     }
 
-    private static Path getEquilateralTriangle(int side) {
+    /**
+     * The listener receiving the time changed by user as long value, for the timers longer than
+     * Integer.MAX_VALUE milliseconds. When it's set, only the long version of onTimeChangedByUser is called
+     */
+    public interface OnTimerViewLongChangeListener extends OnTimerViewChangeListener {
+
+        /**
+         * Notification that the time was manually changed by user
+         *
+         * @param timerView The corresponding TimerView
+         * @param time     The current time value in milliseconds.
+         */
+        void onTimeChangedByUser(TimerView timerView, long time);
+    }
 
-        int r = (int) (side*Math.sqrt(3)/6.0);
+    /**
+     * The listener which is also told how late the finish was dispatched. Its
+     * {@link #onPlayFinished(TimerView, long)} is called instead of {@link #onPlayFinished(TimerView)}
+     */
+    public interface OnTimerViewFinishListener extends OnTimerViewChangeListener {
 
-        Point p1 = new Point(0 - r, 0 - side/2);
-        Point p2 = null, p3 = null;
-        p2 = new Point(p1.x, p1.y + side);
-        p3 = new Point(p1.x + r*3, 0);
+        /**
+         * Notification that the timer finished
+         *
+         * @param timerView The corresponding TimerView
+         * @param overshoot How late the notification came after the time was over, in milliseconds
+         */
+        void onPlayFinished(TimerView timerView, long overshoot);
+    }
 
-        Path path = new Path();
-        path.moveTo(p1.x, p1.y);
-        path.lineTo(p2.x, p2.y);
-        path.lineTo(p3.x, p3.y);
+    /**
+     * The listener which is also notified when the time crosses a whole second while playing. It has to be added
+     * with EVENT_TICK. The notifications come from the regular ticks of the timer, so they cost no extra wakeups
+     * unless the view would sleep for longer than a second
+     */
+    public interface OnTimerViewTickListener extends OnTimerViewChangeListener {
 
-        return path;
+        /**
+         * Notification that the time has crossed a whole second
+         *
+         * @param timerView The corresponding TimerView
+         * @param time     The current time value in milliseconds.
+         */
+        void onTick(TimerView timerView, long time);
     }
 
-    private static Path getPauseShape(int height) {
+    /**
+     * An empty implementation of all the listener interfaces, to override only the methods of interest.
+     * Its long onTimeChangedByUser and the onPlayFinished with the overshoot call the plain versions
+     */
+    public static class SimpleOnTimerViewChangeListener implements OnTimerViewLongChangeListener,
+            OnTimerViewFinishListener, OnTimerViewTickListener {
 
-        int width= (int) (height*PAUSE_SHAPE_WIDTH_TO_HEIGHT_FACTOR);
+        @Override
+        public void onTimeChangedByUser(TimerView timerView, int time) {
+        }
 
-        Path path = new Path();
-        path.moveTo(-width, -height);
-        path.lineTo(-width, height);
-        path.moveTo(width, -height);
-        path.lineTo(width, height);
+        @Override
+        public void onTimeChangedByUser(TimerView timerView, long time) {
+            onTimeChangedByUser(timerView, toIntTime(time));
+        }
 
-        return path;
-    }
+        @Override
+        public void onStartTrackingTouch(TimerView timerView) {
+        }
 
-    private static Path getFinishShape(int side, float width) {
+        @Override
+        public void onStopTrackingTouch(TimerView timerView) {
+        }
 
-        Path path = new Path();
+        @Override
+        public void onPlayStarted(TimerView timerView) {
+        }
 
-        width/=2.0f;
-        float widthPart= (float) Math.sqrt(width*width/2);
-        float len1=side*1.5f;
-        float len2=side*0.6f;
-        float len1Part=(float) Math.sqrt(len1*len1/2);
-        float len2Part=(float) Math.sqrt(len2*len2/2);
+        @Override
+        public void onPlayStopped(TimerView timerView) {
+        }
+
+        @Override
+        public void onPlayFinished(TimerView timerView) {
+        }
 
-        path.moveTo(-0.289f*side, 0.484f*side);
-        path.lineTo(-0.289f*side-len2Part, 0.484f*side-len2Part);
-        path.moveTo(-0.289f*side-widthPart, 0.484f*side+widthPart);
-        path.lineTo(-0.289f*side-widthPart+len1Part, 0.484f*side+widthPart-len1Part);
+        @Override
+        public void onPlayFinished(TimerView timerView, long overshoot) {
+            onPlayFinished(timerView);
+        }
 
-        return path;
+        @Override
+        public void onTick(TimerView timerView, long time) {
+        }
+    }
+
+    /**
+     * Cap the time value to fit the int-based API
+     */
+    static int toIntTime(long time) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, time));
     }
 
     /**
@@ -928,16 +1766,35 @@ public class TimerView extends View {
      */
 
     public void setCurTime(int curtime) {
-        curtime = curtime > mFullTime ? mFullTime : curtime;
-        updateProgress(curtime, false);
+        setCurTimeMillis(curtime);
     }
 
     /**
-     * Get the current time progress value in milliseconds
+     * Change the current time progress value
+     *
+     * @param curtime the new value of time in milliseconds
+     */
+    public void setCurTimeMillis(long curtime) {
+        mEngine.setCurTime(curtime);
+        syncWithEngine();
+    }
+
+    /**
+     * Get the current time progress value in milliseconds. Values over Integer.MAX_VALUE are capped,
+     * use getCurTimeMillis() for the long timers
      *
      */
     public int getCurTime() {
-        return mCurTime;
+        return toIntTime(mEngine.getCurTimeNow());
+    }
+
+    /**
+     * Get the current time progress value in milliseconds. It's up to date even while the view doesn't tick
+     * (e.g. off-screen)
+     *
+     */
+    public long getCurTimeMillis() {
+        return mEngine.getCurTimeNow();
     }
 
     /**
@@ -951,27 +1808,16 @@ public class TimerView extends View {
     /**
      * Change the progress width value
      *
-     * @param progressWidth the new progress width value. Keep in mind that this value must be equal or smaller
-     *                    than the groove width value (unless it's 0). Otherwise the progress arc won't be able to fit the view
-     */
-    public void setProgressWidth(int progressWidth) {
-        this.mProgressWidth = progressWidth;
-
-        int min = Math.min(mTranslateX*2, mTranslateY*2);
-
-        int width=mTranslateX*2;
-        int height=mTranslateY*2;
-
-        mArcWidth = (mGrooveWidth>0)?mGrooveWidth:mProgressWidth;
-
-        int arcDiameter = min - getPaddingLeft() - mArcWidth;
-        mArcRadius = arcDiameter / 2;
-        float top = height / 2 - (arcDiameter / 2);
-        float left = width / 2 - (arcDiameter / 2);
-        mArcRect.set(left, top, left + arcDiameter, top + arcDiameter);
+     * @param progressWidth the new progress width value. Keep in mind that this value must be equal or smaller
+     *                    than the groove width value (unless it's 0). Otherwise the progress arc won't be able to fit the view
+     */
+    public void setProgressWidth(int progressWidth) {
+        this.mProgressWidth = progressWidth;
 
+        forkStyle();
         mProgressPaint.setStrokeWidth(progressWidth);
-        invalidate();
+        requestGeometryUpdate();
+        requestInvalidate();
     }
 
     /**
@@ -991,21 +1837,10 @@ public class TimerView extends View {
     public void setGrooveWidth(int grooveWidth) {
         this.mGrooveWidth = grooveWidth;
 
-        int min = Math.min(mTranslateX*2, mTranslateY*2);
-
-        int width=mTranslateX*2;
-        int height=mTranslateY*2;
-
-        mArcWidth = (mGrooveWidth>0)?mGrooveWidth:mProgressWidth;
-
-        int arcDiameter = min - getPaddingLeft() - mArcWidth;
-        mArcRadius = arcDiameter / 2;
-        float top = height / 2 - (arcDiameter / 2);
-        float left = width / 2 - (arcDiameter / 2);
-        mArcRect.set(left, top, left + arcDiameter, top + arcDiameter);
-
+        forkStyle();
         mGroovePaint.setStrokeWidth(grooveWidth);
-        invalidate();
+        requestGeometryUpdate();
+        requestInvalidate();
     }
 
     /**
@@ -1034,8 +1869,9 @@ public class TimerView extends View {
      * @param color the new progress color value
      */
     public void setProgressColor(int color) {
+        forkStyle();
         mProgressPaint.setColor(color);
-        invalidate();
+        requestInvalidate();
     }
 
     /**
@@ -1052,8 +1888,10 @@ public class TimerView extends View {
      * @param color the new groove color value
      */
     public void setGrooveColor(int color) {
+        forkStyle();
         mGroovePaint.setColor(color);
-        invalidate();
+        invalidateStaticLayer();
+        requestInvalidate();
     }
 
 
@@ -1062,8 +1900,9 @@ public class TimerView extends View {
      *
      */
     public void setBigTextColor(int textColor) {
+        forkStyle();
         mBigTextPaint.setColor(textColor);
-        invalidate();
+        requestInvalidate();
     }
 
     /**
@@ -1073,9 +1912,10 @@ public class TimerView extends View {
      */
     public void setBigTextSize(float textSize) {
         mBigTextSize = textSize;
+        forkStyle();
         mBigTextPaint.setTextSize(mBigTextSize);
-        mBigTextPaint.getTextBounds(formatTime(0), 0, mCurFormattedTime.length(), mBigTextRect);
-        invalidate();
+        requestTextMeasure();
+        requestInvalidate();
     }
 
     /**
@@ -1083,8 +1923,9 @@ public class TimerView extends View {
      *
      */
     public void setSmallTextColor(int textColor) {
+        forkStyle();
         mSmallTextPaint.setColor(textColor);
-        invalidate();
+        requestInvalidate();
     }
 
     /**
@@ -1094,17 +1935,27 @@ public class TimerView extends View {
      */
     public void setSmallTextSize(float textSize) {
         mSmallTextSize = textSize;
+        forkStyle();
         mSmallTextPaint.setTextSize(mSmallTextSize);
-        mSmallTextPaint.getTextBounds(formatTime(0), 0, mCurFormattedTime.length(), mSmallTextRect);
-        invalidate();
+        requestTextMeasure();
+        requestInvalidate();
     }
 
     /**
-     * Get the time value representing the whole cycle of the timer (the max value) in milliseconds
+     * Get the time value representing the whole cycle of the timer (the max value) in milliseconds.
+     * Values over Integer.MAX_VALUE are capped, use getFullTimeMillis() for the long timers
      *
      */
     public int getFullTime() {
-        return mFullTime;
+        return toIntTime(mEngine.getFullTime());
+    }
+
+    /**
+     * Get the time value representing the whole cycle of the timer (the max value) in milliseconds
+     *
+     */
+    public long getFullTimeMillis() {
+        return mEngine.getFullTime();
     }
 
     /**
@@ -1113,18 +1964,106 @@ public class TimerView extends View {
      * @param fullTime the new fulltime value in milliseconds
      */
     public void setFullTime(int fullTime) {
-        if (fullTime <= 0)
-            throw new IllegalArgumentException("FullTime should be greater than 0.");
-        this.mFullTime = fullTime;
-        updateProgress(mCurTime, false);
+        setFullTimeMillis(fullTime);
+    }
+
+    /**
+     * Set the time value representing the whole cycle of the timer (the max value)
+     *
+     * @param fullTime the new fulltime value in milliseconds
+     */
+    public void setFullTimeMillis(long fullTime) {
+        mEngine.setFullTime(fullTime);
+        syncWithEngine();
+    }
+
+    /**
+     * Set the clock the elapsed time is measured with (e.g. a fake one for tests)
+     *
+     * @param timeSource the new time source
+     */
+    public void setTimeSource(@NonNull TimeSource timeSource) {
+        mEngine.setTimeSource(timeSource);
+        syncWithEngine();
     }
 
     /**
-     * Set the listener to the events of the timer
+     * Set the listener to the events of the timer, replacing the one set before. It's notified about
+     * all the events but EVENT_TICK, along with the ones added by addOnTimerViewChangeListener
      *
      */
     public void setOnTimerViewChangeListener(OnTimerViewChangeListener onTimerViewChangeListener) {
+        if (mOnTimerViewChangeListener != null)
+            mListeners.remove(mOnTimerViewChangeListener);
+
         mOnTimerViewChangeListener = onTimerViewChangeListener;
+
+        if (onTimerViewChangeListener != null)
+            mListeners.add(onTimerViewChangeListener, EVENT_ALL, 0);
+    }
+
+    /**
+     * Add a listener to all the events of the timer but EVENT_TICK
+     *
+     */
+    public void addOnTimerViewChangeListener(@NonNull OnTimerViewChangeListener listener) {
+        addOnTimerViewChangeListener(listener, EVENT_ALL, 0);
+    }
+
+    /**
+     * Add a listener to the events of the timer
+     *
+     * @param events the EVENT_ flags of the events the listener is notified about. EVENT_TICK requires
+     *               an OnTimerViewTickListener
+     */
+    public void addOnTimerViewChangeListener(@NonNull OnTimerViewChangeListener listener, int events) {
+        addOnTimerViewChangeListener(listener, events, 0);
+    }
+
+    /**
+     * Add a listener to the events of the timer, with the time changed by the user notified at a limited rate.
+     * Adding a listener again replaces its events and interval
+     *
+     * @param events the EVENT_ flags of the events the listener is notified about. EVENT_TICK requires
+     *               an OnTimerViewTickListener
+     * @param minIntervalMillis the minimal interval between the notifications about the time changed by the user,
+     *                          0 for at most one per frame. The last time is notified when the user stops anyway
+     */
+    public void addOnTimerViewChangeListener(@NonNull OnTimerViewChangeListener listener, int events,
+                                             long minIntervalMillis) {
+        mListeners.add(listener, events, minIntervalMillis);
+
+        if ((events & EVENT_TICK) != 0)
+            mTickSecond = mEngine.getCurTime() / 1000;
+    }
+
+    /**
+     * Observe the state snapshots of the timer on the main thread. The changes are conflated, so a slow
+     * observer only gets the latest state. While playing, the current time changes with the ticks of the view
+     *
+     */
+    public TimerEngine.Subscription subscribe(@NonNull TimerEngine.StateObserver observer) {
+        return mEngine.subscribe(observer, mMainExecutor);
+    }
+
+    /**
+     * Get the current state snapshot of the timer, with the time up to date even while the view doesn't tick.
+     * Can be called from any thread
+     *
+     */
+    public TimerState getState() {
+        return mEngine.getStateNow();
+    }
+
+    /**
+     * Remove a listener added by addOnTimerViewChangeListener. Does nothing if it's not added
+     *
+     */
+    public void removeOnTimerViewChangeListener(@NonNull OnTimerViewChangeListener listener) {
+        mListeners.remove(listener);
+
+        if (listener == mOnTimerViewChangeListener)
+            mOnTimerViewChangeListener = null;
     }
 
     /**
@@ -1157,7 +2096,99 @@ public class TimerView extends View {
      *
      */
     public boolean isIsPlaying() {
-        return mIsPlaying;
+        return mEngine.isPlaying();
+    }
+
+    /**
+     * Specify whether the background circle and the groove arc should be drawn once into an offscreen bitmap
+     * and reused on every frame, instead of being drawn again each time. Saves the fill rate while playing
+     * at the cost of a bitmap of the view size
+     *
+     * @param enabled whether the static layer cache is enabled
+     */
+    public void setStaticLayerCacheEnabled(boolean enabled) {
+        mCacheStaticLayers = enabled;
+        if (!enabled)
+            releaseStaticLayer();
+        requestInvalidate();
+    }
+
+    /**
+     * Whether the background circle and the groove arc are cached into an offscreen bitmap
+     *
+     */
+    public boolean isStaticLayerCacheEnabled() {
+        return mCacheStaticLayers;
+    }
+
+    /**
+     * Specify whether the time text should be drawn from pre-rasterized digits and separators with
+     * the fixed digit advance, instead of shaping the whole string on every frame. Only applies to the patterns
+     * made of digits and separators, others are still drawn as text
+     *
+     * @param enabled whether the digit atlas is enabled
+     */
+    public void setDigitAtlasEnabled(boolean enabled) {
+        mDigitAtlasEnabled = enabled;
+        if (!enabled)
+            releaseDigitAtlases();
+        requestInvalidate();
+    }
+
+    /**
+     * Whether the time text is drawn from pre-rasterized digits
+     *
+     */
+    public boolean isDigitAtlasEnabled() {
+        return mDigitAtlasEnabled;
+    }
+
+    /**
+     * Get the amount of redraws skipped because neither the time text nor the progress arc
+     * had visibly changed
+     *
+     */
+    public long getSkippedRedrawCount() {
+        return mSkippedRedrawCount;
+    }
+
+    /**
+     * Enable or disable recording of the performance metrics. Disabled by default. Disabling drops
+     * the recorded values
+     *
+     * @param enabled whether the metrics should be recorded
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        if (enabled && mMetrics == null)
+            mMetrics = new TimerViewMetrics();
+        else if (!enabled)
+            mMetrics = null;
+    }
+
+    /**
+     * Whether the performance metrics are recorded
+     *
+     */
+    public boolean isMetricsEnabled() {
+        return mMetrics != null;
+    }
+
+    /**
+     * Get a snapshot of the performance metrics recorded so far
+     *
+     * @return the copy of the metrics, or null if they aren't enabled
+     */
+    @Nullable
+    public TimerViewMetrics getMetrics() {
+        return mMetrics != null ? mMetrics.copy() : null;
+    }
+
+    /**
+     * Drop the performance metrics recorded so far
+     */
+    public void resetMetrics() {
+        if (mMetrics != null)
+            mMetrics.reset();
     }
 
     /**
@@ -1165,7 +2196,7 @@ public class TimerView extends View {
      *
      */
     public boolean isAllowMoveForward() {
-        return mAllowMoveForward;
+        return mEngine.isAllowMoveForward();
     }
 
     /**
@@ -1173,7 +2204,7 @@ public class TimerView extends View {
      *
      */
     public boolean isAllowMoveBackward() {
-        return mAllowMoveBackward;
+        return mEngine.isAllowMoveBackward();
     }
 
     /**
@@ -1185,8 +2216,8 @@ public class TimerView extends View {
         this.mPlayButtonTriangleSideLength = playButtonTriangleSideLength;
         if (mPlayButtonTriangleSideLength <= 0)
             throw new IllegalArgumentException("playButtonTriangleSideLength should not be less than min.");
-        mPlayTriangle=getEquilateralTriangle(mPlayButtonTriangleSideLength);
-        invalidate();
+        requestGeometryUpdate();
+        requestInvalidate();
     }
 
 
@@ -1196,7 +2227,7 @@ public class TimerView extends View {
      * @param allowMoveForward whether the user is allowed to manually move the timer forward
      */
     public void setAllowMoveForward(boolean allowMoveForward) {
-        this.mAllowMoveForward = allowMoveForward;
+        mEngine.setAllowMoveForward(allowMoveForward);
     }
 
     /**
@@ -1205,7 +2236,7 @@ public class TimerView extends View {
      * @param allowMoveBackward whether the user is allowed to manually move the timer backward
      */
     public void setAllowMoveBackward(boolean allowMoveBackward) {
-        this.mAllowMoveBackward = allowMoveBackward;
+        mEngine.setAllowMoveBackward(allowMoveBackward);
     }
 
     /**
@@ -1215,6 +2246,7 @@ public class TimerView extends View {
      */
     public void setPlayButtonIcon(@NonNull Drawable playButtonIcon) {
 
+        mPlayIconRes = 0;
         mPlayIcon = playButtonIcon;
 
         int playIconHalfWidth = mPlayIcon.getIntrinsicWidth() / 2;
@@ -1227,7 +2259,7 @@ public class TimerView extends View {
             mPlayIcon.setColorFilter(new PorterDuffColorFilter(mPlayButtonTint, PorterDuff.Mode.SRC_ATOP));
         }
 
-        invalidate();
+        requestInvalidate();
     }
 
     /**
@@ -1237,6 +2269,7 @@ public class TimerView extends View {
      */
     public void setPauseButtonIcon(@NonNull Drawable pauseButtonIcon) {
 
+        mPauseIconRes = 0;
         mPauseIcon = pauseButtonIcon;
 
         int iconHalfWidth = mPauseIcon.getIntrinsicWidth() / 2;
@@ -1249,7 +2282,7 @@ public class TimerView extends View {
             mPauseIcon.setColorFilter(new PorterDuffColorFilter(mPauseButtonTint, PorterDuff.Mode.SRC_ATOP));
         }
 
-        invalidate();
+        requestInvalidate();
     }
 
     /**
@@ -1259,6 +2292,7 @@ public class TimerView extends View {
      */
     public void setFinishIcon(@NonNull Drawable icon) {
 
+        mFinishIconRes = 0;
         mFinishIcon = icon;
 
         int iconHalfWidth = mFinishIcon.getIntrinsicWidth() / 2;
@@ -1271,7 +2305,7 @@ public class TimerView extends View {
             mFinishIcon.setColorFilter(new PorterDuffColorFilter(mFinishIconTint, PorterDuff.Mode.SRC_ATOP));
         }
 
-        invalidate();
+        requestInvalidate();
     }
 
     /**
@@ -1282,13 +2316,16 @@ public class TimerView extends View {
     public void setFinishIconTint(int color) {
 
         mFinishIconTint = color;
-        if (mFinishIcon!=null) {
-            mFinishIcon.setColorFilter(new PorterDuffColorFilter(mFinishIconTint, PorterDuff.Mode.SRC_ATOP));
+        if (mFinishIconRes != 0) {
+            requestIconsLoad();
+        } else if (mFinishIcon!=null) {
+            // the icon may share its state with the icons of the other views
+            mFinishIcon.mutate().setColorFilter(new PorterDuffColorFilter(mFinishIconTint, PorterDuff.Mode.SRC_ATOP));
         }
 
         mFinishShapePaint.setColor(mFinishIconTint);
 
-        invalidate();
+        requestInvalidate();
     }
 
     /**
@@ -1299,13 +2336,17 @@ public class TimerView extends View {
     public void setPlayButtonIconTint(int color) {
 
         mPlayButtonTint = color;
-        if (mPlayIcon!=null) {
-            mPlayIcon.setColorFilter(new PorterDuffColorFilter(mPlayButtonTint, PorterDuff.Mode.SRC_ATOP));
+        if (mPlayIconRes != 0) {
+            requestIconsLoad();
+        } else if (mPlayIcon!=null) {
+            // the icon may share its state with the icons of the other views
+            mPlayIcon.mutate().setColorFilter(new PorterDuffColorFilter(mPlayButtonTint, PorterDuff.Mode.SRC_ATOP));
         }
 
+        forkStyle();
         mPlayTrianglePaint.setColor(mPlayButtonTint);
 
-        invalidate();
+        requestInvalidate();
     }
 
     /**
@@ -1316,26 +2357,29 @@ public class TimerView extends View {
     public void setPauseButtonIconTint(int color) {
 
         mPauseButtonTint = color;
-        if (mPauseIcon!=null) {
-            mPauseIcon.setColorFilter(new PorterDuffColorFilter(mPauseButtonTint, PorterDuff.Mode.SRC_ATOP));
+        if (mPauseIconRes != 0) {
+            requestIconsLoad();
+        } else if (mPauseIcon!=null) {
+            // the icon may share its state with the icons of the other views
+            mPauseIcon.mutate().setColorFilter(new PorterDuffColorFilter(mPauseButtonTint, PorterDuff.Mode.SRC_ATOP));
         }
 
         mPauseShapePaint.setColor(mPauseButtonTint);
 
-        invalidate();
+        requestInvalidate();
     }
 
     /**
      * Set the format for the time to draw on the screen
      *
-     * @param timeFormat the string containing the time format (e.g. 'mm:ss')
+     * @param timeFormat the string containing the time format (e.g. 'mm:ss'). For the timers longer than a day
+     *                   'n' stands for the number of elapsed days (e.g. "n'd' HH:mm:ss")
      */
     public void setTimeFormat(String timeFormat) {
         this.mTimeFormat = timeFormat;
-        formatCurTime();
-        mBigTextPaint.getTextBounds(formatTime(0), 0, mCurFormattedTime.length(), mBigTextRect);
-        mSmallTextPaint.getTextBounds(formatTime(0), 0, mCurFormattedTime.length(), mSmallTextRect);
-        invalidate();
+        mTimeFormatter = new TimeFormatter(mTimeFormat);
+        requestTextMeasure();
+        requestInvalidate();
     }
 
     /**
@@ -1364,7 +2408,8 @@ public class TimerView extends View {
         mBackgroundDrawable.setBounds(-backHalfWidth, -backHalfHeight, backHalfWidth,
                 backHalfHeight);
 
-        invalidate();
+        invalidateStaticLayer();
+        requestInvalidate();
     }
 
     /**
@@ -1375,8 +2420,10 @@ public class TimerView extends View {
 
     public void setCircleBackgroundColor(int color) {
 
+        forkStyle();
         mBackPaint.setColor(color);
-        invalidate();
+        invalidateStaticLayer();
+        requestInvalidate();
     }
 
 
@@ -1387,19 +2434,10 @@ public class TimerView extends View {
      */
     public void setPlayButtonIcon(@DrawableRes int resId) {
 
-        mPlayIcon = new BitmapDrawable(getResources(), BitmapFactory.decodeResource(getResources(), resId));
-
-        int playIconHalfWidth = mPlayIcon.getIntrinsicWidth() / 2;
-        int playIconHalfHeight = mPlayIcon.getIntrinsicHeight() / 2;
-
-        mPlayIcon.setBounds(-playIconHalfWidth, -playIconHalfHeight, playIconHalfWidth,
-                playIconHalfHeight);
-
-        if (mPlayButtonTint!=null) {
-            mPlayIcon.setColorFilter(new PorterDuffColorFilter(mPlayButtonTint, PorterDuff.Mode.SRC_ATOP));
-        }
+        mPlayIconRes = resId;
+        requestIconsLoad();
 
-        invalidate();
+        requestInvalidate();
     }
 
     /**
@@ -1409,19 +2447,10 @@ public class TimerView extends View {
      */
     public void setPauseButtonIcon(@DrawableRes int resId) {
 
-        mPauseIcon = new BitmapDrawable(getResources(), BitmapFactory.decodeResource(getResources(), resId));
+        mPauseIconRes = resId;
+        requestIconsLoad();
 
-        int iconHalfWidth = mPauseIcon.getIntrinsicWidth() / 2;
-        int iconHalfHeight = mPauseIcon.getIntrinsicHeight() / 2;
-
-        mPauseIcon.setBounds(-iconHalfWidth, -iconHalfHeight, iconHalfWidth,
-                iconHalfHeight);
-
-        if (mPauseButtonTint!=null) {
-            mPauseIcon.setColorFilter(new PorterDuffColorFilter(mPauseButtonTint, PorterDuff.Mode.SRC_ATOP));
-        }
-
-        invalidate();
+        requestInvalidate();
     }
 
     /**
@@ -1431,19 +2460,10 @@ public class TimerView extends View {
      */
     public void setFinishIcon(@DrawableRes int resId) {
 
-        mFinishIcon = new BitmapDrawable(getResources(), BitmapFactory.decodeResource(getResources(), resId));
-
-        int iconHalfWidth = mFinishIcon.getIntrinsicWidth() / 2;
-        int iconHalfHeight = mFinishIcon.getIntrinsicHeight() / 2;
-
-        mFinishIcon.setBounds(-iconHalfWidth, -iconHalfHeight, iconHalfWidth,
-                iconHalfHeight);
-
-        if (mFinishIconTint!=null) {
-            mFinishIcon.setColorFilter(new PorterDuffColorFilter(mFinishIconTint, PorterDuff.Mode.SRC_ATOP));
-        }
+        mFinishIconRes = resId;
+        requestIconsLoad();
 
-        invalidate();
+        requestInvalidate();
     }
 
 
@@ -1465,7 +2485,8 @@ public class TimerView extends View {
         mBackgroundDrawable.setBounds(-backHalfWidth, -backHalfHeight, backHalfWidth,
                 backHalfHeight);
 
-        invalidate();
+        invalidateStaticLayer();
+        requestInvalidate();
     }
 
     /**
@@ -1485,9 +2506,277 @@ public class TimerView extends View {
     public void setCountdown(boolean countdown) {
         this.mCountdown = countdown;
 
-        formatCurTime();
-        mBigTextPaint.getTextBounds(formatTime(0), 0, mCurFormattedTime.length(), mBigTextRect);
-        mSmallTextPaint.getTextBounds(formatTime(0), 0, mCurFormattedTime.length(), mSmallTextRect);
-        invalidate();
+        requestTextMeasure();
+        requestInvalidate();
+    }
+
+    /**
+     * Start changing several properties at once. The changes are made when {@link Editor#apply()} is called, then
+     * the geometry, the text bounds and the icons are recalculated and the view is invalidated only once
+     *
+     */
+    public Editor edit() {
+        return new Editor();
+    }
+
+    /**
+     * Changes several properties of the view at once. The setters have the same meaning as the ones of TimerView
+     */
+    public final class Editor {
+
+        private final ArrayList<Runnable> mChanges = new ArrayList<>();
+
+        private boolean mIsApplied = false;
+
+        private Editor() {
+        }
+
+        public Editor setProgressWidth(final int progressWidth) {
+            mChanges.add(new Runnable() {
+                @Override
+                public void run() {
+                    TimerView.this.setProgressWidth(progressWidth);
+                }
+            });
+            return this;
+        }
+
+        public Editor setGrooveWidth(final int grooveWidth) {
+            mChanges.add(new Runnable() {
+                @Override
+                public void run() {
+                    TimerView.this.setGrooveWidth(grooveWidth);
+                }
+            });
+            return this;
+        }
+
+        public Editor setProgressColor(final int color) {
+            mChanges.add(new Runnable() {
+                @Override
+                public void run() {
+                    TimerView.this.setProgressColor(color);
+                }
+            });
+            return this;
+        }
+
+        public Editor setGrooveColor(final int color) {
+            mChanges.add(new Runnable() {
+                @Override
+                public void run() {
+                    TimerView.this.setGrooveColor(color);
+                }
+            });
+            return this;
+        }
+
+        public Editor setBigTextColor(final int textColor) {
+            mChanges.add(new Runnable() {
+                @Override
+                public void run() {
+                    TimerView.this.setBigTextColor(textColor);
+                }
+            });
+            return this;
+        }
+
+        public Editor setBigTextSize(final float textSize) {
+            mChanges.add(new Runnable() {
+                @Override
+                public void run() {
+                    TimerView.this.setBigTextSize(textSize);
+                }
+            });
+            return this;
+        }
+
+        public Editor setSmallTextColor(final int textColor) {
+            mChanges.add(new Runnable() {
+                @Override
+                public void run() {
+                    TimerView.this.setSmallTextColor(textColor);
+                }
+            });
+            return this;
+        }
+
+        public Editor setSmallTextSize(final float textSize) {
+            mChanges.add(new Runnable() {
+                @Override
+                public void run() {
+                    TimerView.this.setSmallTextSize(textSize);
+                }
+            });
+            return this;
+        }
+
+        public Editor setCircleBackgroundColor(final int color) {
+            mChanges.add(new Runnable() {
+                @Override
+                public void run() {
+                    TimerView.this.setCircleBackgroundColor(color);
+                }
+            });
+            return this;
+        }
+
+        public Editor setCircleBackgroundDrawable(@NonNull final Drawable drawable) {
+            mChanges.add(new Runnable() {
+                @Override
+                public void run() {
+                    TimerView.this.setCircleBackgroundDrawable(drawable);
+                }
+            });
+            return this;
+        }
+
+        public Editor setPlayButtonTriangleSideLength(final int playButtonTriangleSideLength) {
+            mChanges.add(new Runnable() {
+                @Override
+                public void run() {
+                    TimerView.this.setPlayButtonTriangleSideLength(playButtonTriangleSideLength);
+                }
+            });
+            return this;
+        }
+
+        public Editor setPlayButtonIcon(@DrawableRes final int resId) {
+            mChanges.add(new Runnable() {
+                @Override
+                public void run() {
+                    TimerView.this.setPlayButtonIcon(resId);
+                }
+            });
+            return this;
+        }
+
+        public Editor setPauseButtonIcon(@DrawableRes final int resId) {
+            mChanges.add(new Runnable() {
+                @Override
+                public void run() {
+                    TimerView.this.setPauseButtonIcon(resId);
+                }
+            });
+            return this;
+        }
+
+        public Editor setFinishIcon(@DrawableRes final int resId) {
+            mChanges.add(new Runnable() {
+                @Override
+                public void run() {
+                    TimerView.this.setFinishIcon(resId);
+                }
+            });
+            return this;
+        }
+
+        public Editor setPlayButtonIconTint(final int color) {
+            mChanges.add(new Runnable() {
+                @Override
+                public void run() {
+                    TimerView.this.setPlayButtonIconTint(color);
+                }
+            });
+            return this;
+        }
+
+        public Editor setPauseButtonIconTint(final int color) {
+            mChanges.add(new Runnable() {
+                @Override
+                public void run() {
+                    TimerView.this.setPauseButtonIconTint(color);
+                }
+            });
+            return this;
+        }
+
+        public Editor setFinishIconTint(final int color) {
+            mChanges.add(new Runnable() {
+                @Override
+                public void run() {
+                    TimerView.this.setFinishIconTint(color);
+                }
+            });
+            return this;
+        }
+
+        public Editor setTimeFormat(final String timeFormat) {
+            mChanges.add(new Runnable() {
+                @Override
+                public void run() {
+                    TimerView.this.setTimeFormat(timeFormat);
+                }
+            });
+            return this;
+        }
+
+        public Editor setCountdown(final boolean countdown) {
+            mChanges.add(new Runnable() {
+                @Override
+                public void run() {
+                    TimerView.this.setCountdown(countdown);
+                }
+            });
+            return this;
+        }
+
+        public Editor setAllowMoveForward(final boolean allowMoveForward) {
+            mChanges.add(new Runnable() {
+                @Override
+                public void run() {
+                    TimerView.this.setAllowMoveForward(allowMoveForward);
+                }
+            });
+            return this;
+        }
+
+        public Editor setAllowMoveBackward(final boolean allowMoveBackward) {
+            mChanges.add(new Runnable() {
+                @Override
+                public void run() {
+                    TimerView.this.setAllowMoveBackward(allowMoveBackward);
+                }
+            });
+            return this;
+        }
+
+        public Editor setFullTimeMillis(final long fullTime) {
+            mChanges.add(new Runnable() {
+                @Override
+                public void run() {
+                    TimerView.this.setFullTimeMillis(fullTime);
+                }
+            });
+            return this;
+        }
+
+        public Editor setCurTimeMillis(final long curTime) {
+            mChanges.add(new Runnable() {
+                @Override
+                public void run() {
+                    TimerView.this.setCurTimeMillis(curTime);
+                }
+            });
+            return this;
+        }
+
+        /**
+         * Apply the changes: make them, recalculate what they affect and invalidate the view. If one of them
+         * throws, the ones made before it are still recalculated
+         */
+        public void apply() {
+            if (mIsApplied)
+                throw new IllegalStateException("The editor has already been applied.");
+            mIsApplied = true;
+
+            mEditDepth++;
+            try {
+                for (Runnable change : mChanges)
+                    change.run();
+            } finally {
+                applyEdit();
+            }
+        }
     }
 }
@@ -0,0 +1,186 @@
+/**
+ *
+ * Copyright 2017 Dedoxyribose
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package ru.dedoxyribose.timerview;
+
+/**
+ * The listeners of a TimerView with the events each of them is interested in.
+ *
+ * The time changed by the user is coalesced: a change only marks the listeners as pending, and they are
+ * notified with the latest time when dispatched, at most once per their minimal interval. The list is
+ * copied on change, so the listeners can be added and removed from the callbacks. Main thread only.
+ */
+final class TimerViewListeners {
+
+    private static final class Entry {
+        final TimerView.OnTimerViewChangeListener listener;
+        final int events;
+        final long minIntervalMillis;
+
+        boolean isTimeChangePending = false;
+        long lastTimeChangeMillis = Long.MIN_VALUE / 2;
+
+        Entry(TimerView.OnTimerViewChangeListener listener, int events, long minIntervalMillis) {
+            this.listener = listener;
+            this.events = events;
+            this.minIntervalMillis = minIntervalMillis;
+        }
+    }
+
+    private static final Entry[] EMPTY = new Entry[0];
+
+    private Entry[] mEntries = EMPTY;
+
+    /**
+     * The union of the events of all the listeners
+     */
+    private int mEvents = 0;
+
+    /**
+     * Add the listener, replacing its previous registration if any
+     */
+    void add(TimerView.OnTimerViewChangeListener listener, int events, long minIntervalMillis) {
+        if (listener == null)
+            throw new IllegalArgumentException("The listener must not be null");
+        if ((events & TimerView.EVENT_TICK) != 0 && !(listener instanceof TimerView.OnTimerViewTickListener))
+            throw new IllegalArgumentException("The tick events need an OnTimerViewTickListener");
+        if (minIntervalMillis < 0)
+            throw new IllegalArgumentException("The interval must not be negative");
+
+        remove(listener);
+
+        Entry[] entries = new Entry[mEntries.length + 1];
+        System.arraycopy(mEntries, 0, entries, 0, mEntries.length);
+        entries[mEntries.length] = new Entry(listener, events, minIntervalMillis);
+        setEntries(entries);
+    }
+
+    /**
+     * Remove the listener. Does nothing if it's not added
+     */
+    void remove(TimerView.OnTimerViewChangeListener listener) {
+        int index = -1;
+        for (int i = 0; i < mEntries.length; i++) {
+            if (mEntries[i].listener == listener) {
+                index = i;
+                break;
+            }
+        }
+        if (index == -1)
+            return;
+
+        Entry[] entries = new Entry[mEntries.length - 1];
+        System.arraycopy(mEntries, 0, entries, 0, index);
+        System.arraycopy(mEntries, index + 1, entries, index, entries.length - index);
+        setEntries(entries);
+    }
+
+    private void setEntries(Entry[] entries) {
+        mEntries = entries.length == 0 ? EMPTY : entries;
+
+        mEvents = 0;
+        for (Entry entry : mEntries)
+            mEvents |= entry.events;
+    }
+
+    /**
+     * Check whether any of the listeners is interested in any of the events
+     */
+    boolean hasListeners(int events) {
+        return (mEvents & events) != 0;
+    }
+
+    /**
+     * Mark the listeners of the time changed by the user as pending a notification
+     */
+    void markTimeChangedByUser() {
+        for (Entry entry : mEntries) {
+            if ((entry.events & TimerView.EVENT_TIME_CHANGED_BY_USER) != 0)
+                entry.isTimeChangePending = true;
+        }
+    }
+
+    /**
+     * Notify the pending listeners of the time changed by the user whose interval has passed
+     *
+     * @param force whether to notify all the pending ones regardless of their intervals
+     * @return the delay in milliseconds until the next pending listener can be notified, or -1 if none is pending
+     */
+    long dispatchTimeChangedByUser(TimerView view, long time, long nowMillis, boolean force) {
+        long nextDelay = -1;
+
+        for (Entry entry : mEntries) {
+            if (!entry.isTimeChangePending)
+                continue;
+
+            long delay = entry.lastTimeChangeMillis + entry.minIntervalMillis - nowMillis;
+            if (!force && delay > 0) {
+                nextDelay = nextDelay == -1 ? delay : Math.min(nextDelay, delay);
+                continue;
+            }
+
+            entry.isTimeChangePending = false;
+            entry.lastTimeChangeMillis = nowMillis;
+
+            if (entry.listener instanceof TimerView.OnTimerViewLongChangeListener)
+                ((TimerView.OnTimerViewLongChangeListener) entry.listener).onTimeChangedByUser(view, time);
+            else entry.listener.onTimeChangedByUser(view, TimerView.toIntTime(time));
+        }
+        return nextDelay;
+    }
+
+    void dispatchStartTrackingTouch(TimerView view) {
+        for (Entry entry : mEntries) {
+            if ((entry.events & TimerView.EVENT_TRACKING_TOUCH) != 0)
+                entry.listener.onStartTrackingTouch(view);
+        }
+    }
+
+    void dispatchStopTrackingTouch(TimerView view) {
+        for (Entry entry : mEntries) {
+            if ((entry.events & TimerView.EVENT_TRACKING_TOUCH) != 0)
+                entry.listener.onStopTrackingTouch(view);
+        }
+    }
+
+    void dispatchPlayStarted(TimerView view) {
+        for (Entry entry : mEntries) {
+            if ((entry.events & TimerView.EVENT_PLAY_STARTED) != 0)
+                entry.listener.onPlayStarted(view);
+        }
+    }
+
+    void dispatchPlayStopped(TimerView view) {
+        for (Entry entry : mEntries) {
+            if ((entry.events & TimerView.EVENT_PLAY_STOPPED) != 0)
+                entry.listener.onPlayStopped(view);
+        }
+    }
+
+    void dispatchPlayFinished(TimerView view, long overshootMillis) {
+        for (Entry entry : mEntries) {
+            if ((entry.events & TimerView.EVENT_PLAY_FINISHED) == 0)
+                continue;
+
+            if (entry.listener instanceof TimerView.OnTimerViewFinishListener)
+                ((TimerView.OnTimerViewFinishListener) entry.listener).onPlayFinished(view, overshootMillis);
+            else entry.listener.onPlayFinished(view);
+        }
+    }
+
+    void dispatchTick(TimerView view, long time) {
+        for (Entry entry : mEntries) {
+            if ((entry.events & TimerView.EVENT_TICK) != 0)
+                ((TimerView.OnTimerViewTickListener) entry.listener).onTick(view, time);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/**
+ *
+ * Copyright 2017 Dedoxyribose
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+
+
+package ru.dedoxyribose.timerview;
+
+/**
+ * Performance metrics of a TimerView: draw times, tick intervals and latencies, invalidates and the delay
+ * of the finish callback.
+ *
+ * The view records into its own instance without allocating. {@link TimerView#getMetrics()} returns
+ * a copy, so the values can be read at any time without being changed underneath.
+ */
+public final class TimerViewMetrics {
+
+    /**
+     * A tick dispatched later than this after its frame time is counted as late
+     */
+    static final long LATE_TICK_THRESHOLD_NANOS = 16666667L;
+
+    private final Histogram mDrawTime = new Histogram();
+    private final Histogram mTickInterval = new Histogram();
+    private final Histogram mTickJitter = new Histogram();
+    private final Histogram mTickLatency = new Histogram();
+    private final Histogram mFinishLatency = new Histogram();
+
+    private long mInvalidateCount;
+    private long mSkippedRedrawCount;
+    private long mLateTickCount;
+
+    private long mPreviousFrameNanos = -1;
+    private long mPreviousInterval = -1;
+
+    TimerViewMetrics() {
+    }
+
+    /**
+     * Get the durations of onDraw
+     *
+     */
+    public Histogram getDrawTime() {
+        return mDrawTime;
+    }
+
+    /**
+     * Get the intervals between the frame times of the consecutive ticks
+     *
+     */
+    public Histogram getTickInterval() {
+        return mTickInterval;
+    }
+
+    /**
+     * Get the differences between the consecutive tick intervals
+     *
+     */
+    public Histogram getTickJitter() {
+        return mTickJitter;
+    }
+
+    /**
+     * Get the delays between the frame time of a tick and the moment it was handled
+     *
+     */
+    public Histogram getTickLatency() {
+        return mTickLatency;
+    }
+
+    /**
+     * Get the delays between the moment the time was over and the dispatch of onPlayFinished
+     *
+     */
+    public Histogram getFinishLatency() {
+        return mFinishLatency;
+    }
+
+    /**
+     * Get the amount of redraws requested because the time text or the progress arc had visibly changed
+     *
+     */
+    public long getInvalidateCount() {
+        return mInvalidateCount;
+    }
+
+    /**
+     * Get the amount of redraws skipped because nothing had visibly changed
+     *
+     */
+    public long getSkippedRedrawCount() {
+        return mSkippedRedrawCount;
+    }
+
+    /**
+     * Get the amount of ticks handled more than a frame after their frame time
+     *
+     */
+    public long getLateTickCount() {
+        return mLateTickCount;
+    }
+
+    void recordDraw(long durationNanos) {
+        mDrawTime.record(durationNanos);
+    }
+
+    /**
+     * Record a tick
+     *
+     * @param frameTimeNanos the frame time the tick was scheduled for
+     * @param nowNanos       the moment the tick is handled, in the same time base
+     */
+    void recordTick(long frameTimeNanos, long nowNanos) {
+        long latency = nowNanos - frameTimeNanos;
+        mTickLatency.record(latency);
+        if (latency > LATE_TICK_THRESHOLD_NANOS)
+            mLateTickCount++;
+
+        if (mPreviousFrameNanos != -1) {
+            long interval = frameTimeNanos - mPreviousFrameNanos;
+            mTickInterval.record(interval);
+
+            if (mPreviousInterval != -1)
+                mTickJitter.record(Math.abs(interval - mPreviousInterval));
+            mPreviousInterval = interval;
+        }
+        mPreviousFrameNanos = frameTimeNanos;
+    }
+
+    /**
+     * Forget the previous tick, so that a pause between the ticks isn't taken for an interval
+     */
+    void resetTickSequence() {
+        mPreviousFrameNanos = -1;
+        mPreviousInterval = -1;
+    }
+
+    void recordInvalidate() {
+        mInvalidateCount++;
+    }
+
+    void recordSkippedRedraw() {
+        mSkippedRedrawCount++;
+    }
+
+    void recordFinish(long latencyNanos) {
+        mFinishLatency.record(latencyNanos);
+    }
+
+    void reset() {
+        mDrawTime.reset();
+        mTickInterval.reset();
+        mTickJitter.reset();
+        mTickLatency.reset();
+        mFinishLatency.reset();
+        mInvalidateCount = 0;
+        mSkippedRedrawCount = 0;
+        mLateTickCount = 0;
+        resetTickSequence();
+    }
+
+    TimerViewMetrics copy() {
+        TimerViewMetrics copy = new TimerViewMetrics();
+        copy.mDrawTime.copyFrom(mDrawTime);
+        copy.mTickInterval.copyFrom(mTickInterval);
+        copy.mTickJitter.copyFrom(mTickJitter);
+        copy.mTickLatency.copyFrom(mTickLatency);
+        copy.mFinishLatency.copyFrom(mFinishLatency);
+        copy.mInvalidateCount = mInvalidateCount;
+        copy.mSkippedRedrawCount = mSkippedRedrawCount;
+        copy.mLateTickCount = mLateTickCount;
+        return copy;
+    }
+
+    /**
+     * A histogram of durations with a fixed set of power-of-two buckets. Bucket 0 holds the values below
+     * a microsecond, bucket i holds the values from 2^(i-1) up to 2^i microseconds, the last one holds
+     * everything above.
+     */
+    public static final class Histogram {
+
+        public static final int BUCKET_COUNT = 32;
+
+        private final long[] mBuckets = new long[BUCKET_COUNT];
+        private long mCount;
+        private long mSum;
+        private long mMin = Long.MAX_VALUE;
+        private long mMax = Long.MIN_VALUE;
+
+        Histogram() {
+        }
+
+        void record(long nanos) {
+            if (nanos < 0)
+                nanos = 0;
+
+            mBuckets[bucketOf(nanos)]++;
+            mCount++;
+            mSum += nanos;
+            if (nanos < mMin)
+                mMin = nanos;
+            if (nanos > mMax)
+                mMax = nanos;
+        }
+
+        static int bucketOf(long nanos) {
+            long micros = nanos / 1000;
+            int bucket = 64 - Long.numberOfLeadingZeros(micros);
+            return bucket < BUCKET_COUNT ? bucket : BUCKET_COUNT - 1;
+        }
+
+        /**
+         * Get the amount of recorded values
+         *
+         */
+        public long getCount() {
+            return mCount;
+        }
+
+        /**
+         * Get the amount of recorded values in the bucket
+         *
+         * @param bucket the index of the bucket, from 0 to {@link #BUCKET_COUNT} - 1
+         */
+        public long getBucketCount(int bucket) {
+            return mBuckets[bucket];
+        }
+
+        /**
+         * Get the upper bound (exclusive) of the bucket in nanoseconds, or Long.MAX_VALUE for the last one
+         *
+         * @param bucket the index of the bucket, from 0 to {@link #BUCKET_COUNT} - 1
+         */
+        public static long getBucketUpperBoundNanos(int bucket) {
+            if (bucket < 0 || bucket >= BUCKET_COUNT)
+                throw new IllegalArgumentException("bucket should be between 0 and " + (BUCKET_COUNT - 1));
+            return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << bucket) * 1000;
+        }
+
+        /**
+         * Get the smallest recorded value in nanoseconds, or 0 if nothing was recorded
+         *
+         */
+        public long getMinNanos() {
+            return mCount == 0 ? 0 : mMin;
+        }
+
+        /**
+         * Get the largest recorded value in nanoseconds, or 0 if nothing was recorded
+         *
+         */
+        public long getMaxNanos() {
+            return mCount == 0 ? 0 : mMax;
+        }
+
+        /**
+         * Get the mean of the recorded values in nanoseconds, or 0 if nothing was recorded
+         *
+         */
+        public long getMeanNanos() {
+            return mCount == 0 ? 0 : mSum / mCount;
+        }
+
+        /**
+         * Get an estimate of the percentile: the upper bound of the bucket it falls into, but not more
+         * than the largest recorded value
+         *
+         * @param percentile the percentile, from 0 to 100
+         */
+        public long getPercentileNanos(double percentile) {
+            if (percentile < 0 || percentile > 100)
+                throw new IllegalArgumentException("percentile should be between 0 and 100");
+            if (mCount == 0)
+                return 0;
+
+            long rank = (long) Math.ceil(percentile / 100.0 * mCount);
+            if (rank < 1)
+                rank = 1;
+
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += mBuckets[i];
+                if (seen >= rank)
+                    return Math.min(getBucketUpperBoundNanos(i), mMax);
+            }
+            return mMax;
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKET_COUNT; i++)
+                mBuckets[i] = 0;
+            mCount = 0;
+            mSum = 0;
+            mMin = Long.MAX_VALUE;
+            mMax = Long.MIN_VALUE;
+        }
+
+        void copyFrom(Histogram other) {
+            System.arraycopy(other.mBuckets, 0, mBuckets, 0, BUCKET_COUNT);
+            mCount = other.mCount;
+            mSum = other.mSum;
+            mMin = other.mMin;
+            mMax = other.mMax;
+        }
+    }
+}
@@ -0,0 +1,409 @@
+/**
+ *
+ * Copyright 2017 Dedoxyribose
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ */
+
+package ru.dedoxyribose.timerview;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A hierarchical timing wheel for many timers which aren't drawn, e.g. thousands of TimerEngine
+ * countdowns in a service.
+ *
+ * Scheduling and cancelling are O(1) regardless of the amount of pending timeouts. The expired timeouts
+ * are collected once per tick and their callbacks are run in a batch on a single worker thread, which is
+ * started with start(). The deadlines are instants of the time source given to the constructor, which has
+ * to be the one of the scheduled engines.
+ */
+public final class TimingWheel {
+
+    /**
+     * The callback of a timeout. It's run on the worker thread and should return quickly, as it delays
+     * the other callbacks of the batch
+     */
+    public interface Callback {
+
+        /**
+         * Notification that the deadline of the timeout has come
+         *
+         * @param overshootNanos how long ago the deadline has passed, in nanoseconds
+         */
+        void onExpired(Timeout timeout, long overshootNanos);
+    }
+
+    /**
+     * A scheduled callback. Can be cancelled from any thread
+     */
+    public static final class Timeout {
+
+        private final TimingWheel mWheel;
+        private final long mDeadlineNanos;
+        private final long mDeadlineTick;
+        private final Callback mCallback;
+
+        private int mBucket = NO_BUCKET;
+        private Timeout mPrev;
+        private Timeout mNext;
+
+        private Timeout(TimingWheel wheel, long deadlineNanos, long deadlineTick, Callback callback) {
+            mWheel = wheel;
+            mDeadlineNanos = deadlineNanos;
+            mDeadlineTick = deadlineTick;
+            mCallback = callback;
+        }
+
+        /**
+         * Get the instant of the time source (in nanoseconds) the timeout expires at
+         *
+         */
+        public long getDeadlineNanos() {
+            return mDeadlineNanos;
+        }
+
+        /**
+         * Check whether the timeout is still waiting for its deadline
+         *
+         */
+        public boolean isPending() {
+            synchronized (mWheel) {
+                return mBucket != NO_BUCKET;
+            }
+        }
+
+        /**
+         * Cancel the timeout, so that its callback won't be run
+         *
+         * @return false if the timeout has already expired or has been cancelled
+         */
+        public boolean cancel() {
+            synchronized (mWheel) {
+                if (mBucket == NO_BUCKET)
+                    return false;
+
+                mWheel.unlink(this);
+                return true;
+            }
+        }
+    }
+
+    private static final int NO_BUCKET = -1;
+
+    private static final int SLOT_BITS = 8;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    /**
+     * The timeouts further than the top level reaches, they are redistributed whenever the top level wraps
+     */
+    private static final int OVERFLOW_BUCKET = LEVELS * SLOTS;
+
+    /**
+     * The timeouts scheduled at or before the current tick, expired on the next pass
+     */
+    private static final int DUE_BUCKET = OVERFLOW_BUCKET + 1;
+
+    private final TimeSource mTimeSource;
+    private final long mTickNanos;
+
+    /**
+     * The instant of mTimeSource the ticks are counted from
+     */
+    private final long mOriginNanos;
+
+    /**
+     * The heads of the intrusive lists of the levels' slots, followed by the overflow and the due buckets
+     */
+    private final Timeout[] mHeads = new Timeout[DUE_BUCKET + 1];
+
+    /**
+     * The last tick whose timeouts have been expired
+     */
+    private long mCurrentTick = 0;
+
+    private int mPendingCount = 0;
+
+    /**
+     * The timeouts expired by the current pass, only touched by the thread doing it
+     */
+    private final ArrayList<Timeout> mExpired = new ArrayList<>();
+
+    private Thread mWorker;
+
+    /**
+     * The tick the worker sleeps until, Long.MAX_VALUE if it sleeps until something is scheduled
+     */
+    private long mWorkerWakeTick = Long.MAX_VALUE;
+    private boolean mIsShutdown = false;
+
+    /**
+     * @param timeSource the clock the deadlines are measured with
+     * @param tick the precision of the wheel: the callbacks are run up to a tick after the deadline
+     */
+    public TimingWheel(TimeSource timeSource, long tick, TimeUnit unit) {
+        if (tick <= 0)
+            throw new IllegalArgumentException("The tick must be positive");
+
+        mTimeSource = timeSource;
+        mTickNanos = unit.toNanos(tick);
+        mOriginNanos = timeSource.nanoTime();
+    }
+
+    /**
+     * Start the worker thread running the callbacks. Does nothing if it's already started
+     */
+    public synchronized void start() {
+        if (mIsShutdown)
+            throw new IllegalStateException("The wheel has been shut down");
+        if (mWorker != null)
+            return;
+
+        mWorker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runWorker();
+            }
+        }, "TimingWheel");
+        mWorker.setDaemon(true);
+        mWorker.start();
+    }
+
+    /**
+     * Stop the worker thread. The pending timeouts are never run
+     */
+    public synchronized void shutdown() {
+        mIsShutdown = true;
+        notifyAll();
+    }
+
+    /**
+     * Get the amount of the timeouts waiting for their deadlines
+     *
+     */
+    public synchronized int getPendingCount() {
+        return mPendingCount;
+    }
+
+    /**
+     * Schedule the callback at the instant of the time source
+     *
+     * @param deadlineNanos the instant in nanoseconds, a past one makes the callback run on the next pass
+     */
+    public Timeout scheduleAt(long deadlineNanos, Callback callback) {
+        if (callback == null)
+            throw new IllegalArgumentException("The callback must not be null");
+
+        long deadlineTick = ceilDiv(deadlineNanos - mOriginNanos, mTickNanos);
+
+        synchronized (this) {
+            Timeout timeout = new Timeout(this, deadlineNanos, deadlineTick, callback);
+            insert(timeout);
+
+            // the worker sleeps until its next event, wake it only if this one comes earlier
+            if (deadlineTick < mWorkerWakeTick)
+                notifyAll();
+
+            return timeout;
+        }
+    }
+
+    /**
+     * Schedule the callback after the delay
+     *
+     */
+    public Timeout schedule(long delay, TimeUnit unit, Callback callback) {
+        return scheduleAt(mTimeSource.nanoTime() + unit.toNanos(delay), callback);
+    }
+
+    /**
+     * Schedule the callback when the playing engine reaches its full time, or some time before it
+     * (e.g. a "10 seconds left" cue). The engine isn't ticked: the callback may do it to dispatch onPlayFinished
+     *
+     * @param engine a playing engine using the time source of the wheel
+     * @param advanceNanos how long before the finish the callback has to run, in nanoseconds
+     */
+    public Timeout scheduleFinish(TimerEngine engine, long advanceNanos, Callback callback) {
+        TimerState state = engine.getState();
+        if (!state.isPlaying())
+            throw new IllegalArgumentException("The engine isn't playing");
+
+        return scheduleAt(state.getDeadlineNanos() - advanceNanos, callback);
+    }
+
+    /**
+     * Run the callbacks of all the timeouts whose deadlines have come by the instant, on the calling thread
+     *
+     * @return the amount of the callbacks run
+     */
+    int expire(long nowNanos) {
+        long nowTick = Math.max(floorDiv(nowNanos - mOriginNanos, mTickNanos), 0);
+
+        synchronized (this) {
+            collect(mHeads[DUE_BUCKET]);
+
+            while (mCurrentTick < nowTick) {
+                long tick = mPendingCount == 0 ? Long.MAX_VALUE : nextEventTick();
+
+                // nothing to cascade or to expire on the way, jump straight to the end
+                if (tick > nowTick) {
+                    mCurrentTick = nowTick;
+                    break;
+                }
+
+                mCurrentTick = tick;
+                cascade();
+                collect(mHeads[(int) (mCurrentTick & SLOT_MASK)]);
+                // the cascaded timeouts of the current tick itself
+                collect(mHeads[DUE_BUCKET]);
+            }
+        }
+
+        int count = mExpired.size();
+        for (int i = 0; i < count; i++) {
+            Timeout timeout = mExpired.get(i);
+            timeout.mCallback.onExpired(timeout, nowNanos - timeout.mDeadlineNanos);
+        }
+        mExpired.clear();
+
+        return count;
+    }
+
+    private void runWorker() {
+        while (true) {
+            synchronized (this) {
+                try {
+                    while (!mIsShutdown && mHeads[DUE_BUCKET] == null) {
+                        if (mPendingCount == 0) {
+                            mWorkerWakeTick = Long.MAX_VALUE;
+                            wait();
+                            continue;
+                        }
+
+                        mWorkerWakeTick = nextEventTick();
+                        long waitNanos = mOriginNanos + mWorkerWakeTick * mTickNanos - mTimeSource.nanoTime();
+                        if (waitNanos <= 0)
+                            break;
+
+                        TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } finally {
+                    mWorkerWakeTick = Long.MIN_VALUE;
+                }
+
+                if (mIsShutdown)
+                    return;
+            }
+
+            expire(mTimeSource.nanoTime());
+        }
+    }
+
+    /**
+     * Get the next tick which has either timeouts to expire or a higher level slot to cascade
+     */
+    private long nextEventTick() {
+        long boundary = (mCurrentTick | SLOT_MASK) + 1;
+
+        for (long tick = mCurrentTick + 1; tick < boundary; tick++) {
+            if (mHeads[(int) (tick & SLOT_MASK)] != null)
+                return tick;
+        }
+        return boundary;
+    }
+
+    /**
+     * Put the timeout into the lowest level whose slot range covers it
+     */
+    private void insert(Timeout timeout) {
+        long tick = timeout.mDeadlineTick;
+        int bucket;
+
+        if (tick <= mCurrentTick) {
+            bucket = DUE_BUCKET;
+        } else {
+            bucket = OVERFLOW_BUCKET;
+            for (int level = 0; level < LEVELS; level++) {
+                int shift = SLOT_BITS * (level + 1);
+                // the same higher digits mean the slot of this level is reached before it wraps
+                if ((tick >>> shift) == (mCurrentTick >>> shift)) {
+                    bucket = level * SLOTS + (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+                    break;
+                }
+            }
+        }
+
+        Timeout head = mHeads[bucket];
+        timeout.mBucket = bucket;
+        timeout.mPrev = null;
+        timeout.mNext = head;
+        if (head != null)
+            head.mPrev = timeout;
+        mHeads[bucket] = timeout;
+        mPendingCount++;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.mPrev != null)
+            timeout.mPrev.mNext = timeout.mNext;
+        else mHeads[timeout.mBucket] = timeout.mNext;
+
+        if (timeout.mNext != null)
+            timeout.mNext.mPrev = timeout.mPrev;
+
+        timeout.mBucket = NO_BUCKET;
+        timeout.mPrev = null;
+        timeout.mNext = null;
+        mPendingCount--;
+    }
+
+    /**
+     * Move the timeouts of the higher levels' slots which start at the current tick down the levels
+     */
+    private void cascade() {
+        for (int level = 1; level <= LEVELS; level++) {
+            if (((mCurrentTick >>> (SLOT_BITS * (level - 1))) & SLOT_MASK) != 0)
+                return;
+
+            int bucket = level == LEVELS ? OVERFLOW_BUCKET
+                    : level * SLOTS + (int) ((mCurrentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+
+            Timeout timeout = mHeads[bucket];
+            while (timeout != null) {
+                Timeout next = timeout.mNext;
+                unlink(timeout);
+                insert(timeout);
+                timeout = next;
+            }
+        }
+    }
+
+    private void collect(Timeout head) {
+        Timeout timeout = head;
+        while (timeout != null) {
+            Timeout next = timeout.mNext;
+            unlink(timeout);
+            mExpired.add(timeout);
+            timeout = next;
+        }
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        return (x % y != 0 && (x < 0)) ? q - 1 : q;
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -floorDiv(-x, y);
+    }
+}
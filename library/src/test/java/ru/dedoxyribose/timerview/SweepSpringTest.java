@@ -0,0 +1,69 @@
+package ru.dedoxyribose.timerview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the spring smoothing the visible sweep.
+ */
+public class SweepSpringTest {
+
+    @Test
+    public void step_approachesTargetWithoutOvershoot() throws Exception {
+        SweepSpring spring = new SweepSpring();
+        spring.snapTo(0);
+        spring.setTarget(180);
+
+        float previous = 0;
+        int frames = 0;
+        while (spring.isMoving()) {
+            spring.step(1 / 60f);
+            assertTrue(spring.getPosition() >= previous);
+            assertTrue(spring.getPosition() <= 180);
+            previous = spring.getPosition();
+            frames++;
+        }
+
+        assertEquals(180, spring.getPosition(), 0);
+        // settles well within the second
+        assertTrue(frames < 60);
+    }
+
+    @Test
+    public void step_isStableForLongFrames() throws Exception {
+        SweepSpring spring = new SweepSpring();
+        spring.snapTo(0);
+        spring.setTarget(90);
+
+        spring.step(5);
+
+        assertFalse(spring.isMoving());
+        assertEquals(90, spring.getPosition(), 0);
+    }
+
+    @Test
+    public void setTarget_keepsMotionContinuous() throws Exception {
+        SweepSpring spring = new SweepSpring();
+        spring.snapTo(0);
+        spring.setTarget(100);
+        spring.step(1 / 60f);
+        float position = spring.getPosition();
+
+        spring.setTarget(200);
+
+        assertEquals(position, spring.getPosition(), 0);
+        assertTrue(spring.isMoving());
+        spring.step(1 / 60f);
+        assertTrue(spring.getPosition() > position);
+    }
+
+    @Test
+    public void setTarget_atRestDoesNotMove() throws Exception {
+        SweepSpring spring = new SweepSpring();
+        spring.snapTo(42);
+        spring.setTarget(42);
+
+        assertFalse(spring.isMoving());
+    }
+}
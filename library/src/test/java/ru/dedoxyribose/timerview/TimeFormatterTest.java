@@ -0,0 +1,78 @@
+package ru.dedoxyribose.timerview;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that TimeFormatter produces the same output as SimpleDateFormat in UTC.
+ */
+public class TimeFormatterTest {
+
+    private static final String[] PATTERNS = {
+            "mm:ss", "mm.ss", "HH:mm:ss", "H:m:s", "hh:mm", "kk:mm", "KK:mm", "ss.SSS", "s.S",
+            "dd HH:mm", "D'd' HH:mm:ss", "'time' mm:ss", "mm''ss", "'it''s' mm"
+    };
+
+    private static final long[] TIMES = {
+            0, 1, 59, 999, 1000, 59999, 60000, 61234, 3599999, 3600000, 43200000, 86399999, 86400000,
+            31L * 86400000 + 12345, 365L * 86400000 + 1, 800L * 86400000 + 7777
+    };
+
+    @Test
+    public void format_matchesSimpleDateFormat() throws Exception {
+        for (String pattern : PATTERNS) {
+            SimpleDateFormat sdf = new SimpleDateFormat(pattern);
+            sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
+            TimeFormatter formatter = new TimeFormatter(pattern);
+
+            for (long time : TIMES) {
+                assertEquals(pattern + " @ " + time, sdf.format(new Date(time)), formatter.formatToString(time));
+            }
+        }
+    }
+
+    @Test
+    public void format_fallsBackForUnsupportedFields() throws Exception {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
+        TimeFormatter formatter = new TimeFormatter("yyyy-MM-dd HH:mm");
+
+        assertEquals(sdf.format(new Date(123456789L)), formatter.formatToString(123456789L));
+    }
+
+    @Test
+    public void format_elapsedDays() throws Exception {
+        TimeFormatter formatter = new TimeFormatter("n'd' HH:mm:ss");
+
+        assertEquals("0d 00:00:00", formatter.formatToString(0));
+        assertEquals("15d 03:20:00", formatter.formatToString(15L * 86400000 + 12000000));
+        assertEquals("400d 00:00:01", formatter.formatToString(400L * 86400000 + 1000));
+        assertEquals("-1d 23:59:59", formatter.formatToString(-1000));
+    }
+
+    @Test
+    public void getResolution_isTheSmallestField() throws Exception {
+        assertEquals(1000, new TimeFormatter("mm:ss").getResolution());
+        assertEquals(1, new TimeFormatter("ss.SSS").getResolution());
+        assertEquals(60000, new TimeFormatter("HH:mm").getResolution());
+        assertEquals(86400000, new TimeFormatter("n'd'").getResolution());
+        assertEquals(3600000, new TimeFormatter("hh a").getResolution());
+        assertEquals(60000, new TimeFormatter("'seconds' mm").getResolution());
+        assertEquals(Long.MAX_VALUE, new TimeFormatter("'done'").getResolution());
+    }
+
+    @Test
+    public void format_reusesBuffer() throws Exception {
+        TimeFormatter formatter = new TimeFormatter("HH:mm:ss");
+        char[] chars = formatter.getChars();
+
+        assertEquals(8, formatter.format(3723000));
+        assertSame(chars, formatter.getChars());
+        assertEquals("01:02:03", new String(chars, 0, 8));
+    }
+}
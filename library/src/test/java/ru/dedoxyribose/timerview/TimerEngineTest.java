@@ -0,0 +1,512 @@
+package ru.dedoxyribose.timerview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the timer state machine, run on the JVM without Android.
+ */
+public class TimerEngineTest {
+
+    private FakeTimeSource mTimeSource;
+    private TimerEngine mEngine;
+    private RecordingListener mListener;
+
+    @Before
+    public void setUp() throws Exception {
+        mTimeSource = new FakeTimeSource();
+        mEngine = new TimerEngine(mTimeSource);
+        mEngine.setFullTime(60000);
+        mListener = new RecordingListener();
+        mEngine.setListener(mListener);
+    }
+
+    @Test
+    public void tick_advancesOnlyWhilePlaying() throws Exception {
+        mTimeSource.advanceMillis(1000);
+        mEngine.tick();
+        assertEquals(0, mEngine.getCurTime());
+
+        mEngine.play();
+        mTimeSource.advanceMillis(1500);
+        mEngine.tick();
+        assertEquals(1500, mEngine.getCurTime());
+
+        mEngine.stop();
+        mTimeSource.advanceMillis(5000);
+        mEngine.tick();
+        assertEquals(1500, mEngine.getCurTime());
+
+        assertEquals("started", mListener.events.get(0));
+        assertTrue(mListener.events.contains("stopped"));
+    }
+
+    @Test
+    public void tick_doesNotDrift() throws Exception {
+        mEngine.setFullTime(10L * 3600 * 1000);
+        mEngine.play();
+
+        // 16.666666ms frames for an hour, each of them shorter than a whole millisecond count
+        long frames = 3600L * 60;
+        for (long i = 0; i < frames; i++) {
+            mTimeSource.nanos += 16666666;
+            mEngine.tick();
+        }
+
+        assertEquals(frames * 16666666 / 1000000, mEngine.getCurTime());
+    }
+
+    @Test
+    public void tick_finishesOnce() throws Exception {
+        mEngine.play();
+        mTimeSource.advanceMillis(60001);
+        mEngine.tick();
+        mTimeSource.advanceMillis(1000);
+        mEngine.tick();
+
+        assertEquals(60000, mEngine.getCurTime());
+        assertFalse(mEngine.isPlaying());
+        assertEquals(1, mListener.count("finished"));
+        assertEquals(0, mListener.count("stopped"));
+    }
+
+    @Test
+    public void tick_finishesExactlyAtDeadline() throws Exception {
+        mEngine.setCurTime(15000);
+        mEngine.play();
+        assertEquals(-45000000000L, mEngine.getOvershootNanos());
+
+        mTimeSource.advanceMillis(44999);
+        mEngine.tick();
+        assertTrue(mEngine.isPlaying());
+
+        mTimeSource.advanceMillis(1);
+        assertEquals(0, mEngine.getOvershootNanos());
+        mEngine.tick();
+        assertFalse(mEngine.isPlaying());
+        assertEquals(1, mListener.count("finished"));
+    }
+
+    @Test
+    public void getCurTimeNow_advancesWithoutTicks() throws Exception {
+        mEngine.play();
+        mTimeSource.advanceMillis(1500);
+
+        assertEquals(0, mEngine.getCurTime());
+        assertEquals(1500, mEngine.getCurTimeNow());
+        assertEquals(1500, mEngine.getStateNow().getCurTime());
+        assertTrue(mEngine.getStateNow().isPlaying());
+
+        mTimeSource.advanceMillis(60000);
+        assertEquals(60000, mEngine.getCurTimeNow());
+        assertTrue(mEngine.getStateNow().isFinished());
+
+        mEngine.stop();
+        mTimeSource.advanceMillis(1000);
+        assertSame(mEngine.getState(), mEngine.getStateNow());
+    }
+
+    @Test
+    public void tick_pausedWhileTrackingTouch() throws Exception {
+        mEngine.play();
+        mEngine.startTrackingTouch();
+        mEngine.updateFromUser(10000);
+        mTimeSource.advanceMillis(3000);
+        mEngine.tick();
+        assertEquals(10000, mEngine.getCurTime());
+
+        mEngine.stopTrackingTouch();
+        mTimeSource.advanceMillis(2000);
+        mEngine.tick();
+        assertEquals(12000, mEngine.getCurTime());
+    }
+
+    @Test
+    public void updateFromUser_respectsAllowedDirections() throws Exception {
+        mEngine.setCurTime(30000);
+        mEngine.setAllowMoveForward(false);
+
+        mEngine.startTrackingTouch();
+        mEngine.updateFromUser(40000);
+        assertEquals(30000, mEngine.getCurTime());
+        mEngine.updateFromUser(20000);
+        assertEquals(20000, mEngine.getCurTime());
+        mEngine.stopTrackingTouch();
+
+        assertEquals(1, mListener.count("user:20000"));
+    }
+
+    @Test
+    public void updateFromUser_wrapsOverTwelveOClock() throws Exception {
+        mEngine.startTrackingTouch();
+        mEngine.updateFromUser(55000);
+        mEngine.updateFromUser(2000);
+        assertEquals(60000, mEngine.getCurTime());
+        mEngine.stopTrackingTouch();
+
+        mEngine.startTrackingTouch();
+        mEngine.updateFromUser(3000);
+        mEngine.updateFromUser(58000);
+        assertEquals(0, mEngine.getCurTime());
+        mEngine.stopTrackingTouch();
+    }
+
+    @Test
+    public void updateFromUser_staysPinnedUntilFingerComesBack() throws Exception {
+        mEngine.startTrackingTouch();
+        mEngine.updateFromUser(55000);
+        mEngine.updateFromUser(5000);
+        // far past 12 o'clock, a quarter-based rule would jump back here
+        mEngine.updateFromUser(20000);
+        assertEquals(60000, mEngine.getCurTime());
+
+        mEngine.updateFromUser(5000);
+        assertEquals(60000, mEngine.getCurTime());
+        mEngine.updateFromUser(55000);
+        assertEquals(55000, mEngine.getCurTime());
+        mEngine.stopTrackingTouch();
+    }
+
+    @Test
+    public void setCurTime_isCappedByFullTime() throws Exception {
+        mEngine.setCurTime(90000);
+        assertEquals(60000, mEngine.getCurTime());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setFullTime_rejectsNonPositive() throws Exception {
+        mEngine.setFullTime(0);
+    }
+
+    @Test
+    public void convertAngleToTime_longTimers() throws Exception {
+        long fourWeeks = 28L * 24 * 3600 * 1000;
+        mEngine.setFullTime(fourWeeks);
+
+        assertEquals(fourWeeks / 2, mEngine.convertAngleToTime(180));
+        assertEquals(90.0f, mEngine.convertTimeToSweep(fourWeeks / 4), 0.0001f);
+    }
+
+    @Test
+    public void convertPointToAngle_clockwiseFromTwelve() throws Exception {
+        assertEquals(0, TimerEngine.convertPointToAngle(0, -10), 0.0001);
+        assertEquals(90, TimerEngine.convertPointToAngle(10, 0), 0.0001);
+        assertEquals(180, TimerEngine.convertPointToAngle(0, 10), 0.0001);
+        assertEquals(270, TimerEngine.convertPointToAngle(-10, 0), 0.0001);
+    }
+
+    @Test
+    public void stop_bringsTheTimeUpToDate() throws Exception {
+        mEngine.play();
+        mTimeSource.advanceMillis(1500);
+        mEngine.stop();
+        assertEquals(1500, mEngine.getCurTime());
+
+        mEngine.play();
+        mTimeSource.advanceMillis(60000);
+        mEngine.stop();
+        assertEquals(60000, mEngine.getCurTime());
+        assertEquals(1, mListener.count("finished"));
+        assertEquals(1, mListener.count("stopped"));
+    }
+
+    @Test
+    public void concurrentTicks_finishOnce() throws Exception {
+        final CountingListener listener = new CountingListener();
+        mEngine.setListener(listener);
+        mEngine.setFullTime(100);
+
+        for (int round = 0; round < 200; round++) {
+            mEngine.setCurTime(0);
+            mEngine.play();
+            mTimeSource.advanceMillis(100);
+
+            runConcurrently(8, new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10; i++)
+                        mEngine.tick();
+                }
+            });
+
+            assertEquals(round + 1, listener.finished.get());
+            assertFalse(mEngine.isPlaying());
+        }
+    }
+
+    @Test
+    public void concurrentPlayStop_noLostTransitions() throws Exception {
+        final CountingListener listener = new CountingListener();
+        mEngine.setListener(listener);
+
+        runConcurrently(8, new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 20000; i++) {
+                    if (i % 2 == 0)
+                        mEngine.play();
+                    else mEngine.stop();
+                }
+            }
+        });
+
+        int playing = mEngine.isPlaying() ? 1 : 0;
+        assertEquals(listener.started.get(), listener.stopped.get() + playing);
+    }
+
+    @Test
+    public void concurrentSetters_publishConsistentSnapshots() throws Exception {
+        final AtomicBoolean isConsistent = new AtomicBoolean(true);
+
+        runConcurrently(8, new Runnable() {
+            @Override
+            public void run() {
+                Random random = new Random(Thread.currentThread().getId());
+                for (int i = 0; i < 20000; i++) {
+                    switch (random.nextInt(3)) {
+                        case 0: mEngine.setFullTime(1000 + random.nextInt(1000)); break;
+                        case 1: mEngine.setCurTime(random.nextInt(3000)); break;
+                        default:
+                            TimerState state = mEngine.getState();
+                            if (state.getCurTime() > state.getFullTime())
+                                isConsistent.set(false);
+                    }
+                }
+            }
+        });
+
+        assertTrue(isConsistent.get());
+    }
+
+    @Test
+    public void subscribe_conflatesToTheLatestState() throws Exception {
+        ManualExecutor executor = new ManualExecutor();
+        final List<TimerState> states = new ArrayList<>();
+        mEngine.subscribe(new TimerEngine.StateObserver() {
+            @Override
+            public void onStateChanged(TimerState state) {
+                states.add(state);
+            }
+        }, executor);
+
+        mEngine.setCurTime(1000);
+        mEngine.setCurTime(2000);
+        mEngine.play();
+        assertEquals(1, executor.tasks.size());
+
+        executor.runAll();
+        assertEquals(1, states.size());
+        assertEquals(2000, states.get(0).getCurTime());
+        assertTrue(states.get(0).isPlaying());
+
+        mTimeSource.advanceMillis(500);
+        mEngine.tick();
+        executor.runAll();
+        assertEquals(2, states.size());
+        assertEquals(2500, states.get(1).getCurTime());
+    }
+
+    @Test
+    public void subscribe_stopsAfterCancel() throws Exception {
+        ManualExecutor executor = new ManualExecutor();
+        final List<TimerState> states = new ArrayList<>();
+        TimerEngine.Subscription subscription = mEngine.subscribe(new TimerEngine.StateObserver() {
+            @Override
+            public void onStateChanged(TimerState state) {
+                states.add(state);
+            }
+        }, executor);
+        executor.runAll();
+
+        mEngine.setCurTime(1000);
+        subscription.cancel();
+        mEngine.setCurTime(2000);
+        executor.runAll();
+
+        assertTrue(subscription.isCancelled());
+        assertEquals(1, states.size());
+    }
+
+    @Test
+    public void subscribe_slowObserverEndsWithTheLatestState() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final AtomicReference<TimerState> delivered = new AtomicReference<>();
+        final AtomicInteger calls = new AtomicInteger();
+
+        mEngine.subscribe(new TimerEngine.StateObserver() {
+            @Override
+            public void onStateChanged(TimerState state) {
+                delivered.set(state);
+                calls.incrementAndGet();
+                Thread.yield();
+            }
+        }, executor);
+
+        runConcurrently(4, new Runnable() {
+            @Override
+            public void run() {
+                Random random = new Random(Thread.currentThread().getId());
+                for (int i = 0; i < 20000; i++)
+                    mEngine.setCurTime(random.nextInt(60000));
+            }
+        });
+
+        // the deliveries resubmit themselves, so the executor can't be shut down before they catch up
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (delivered.get() != mEngine.getState() && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        executor.shutdown();
+
+        assertSame(mEngine.getState(), delivered.get());
+        assertTrue(calls.get() <= 80001);
+    }
+
+    /**
+     * Run the task on several threads at once and wait for all of them
+     */
+    private static void runConcurrently(int threadCount, final Runnable task) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread[] threads = new Thread[threadCount];
+
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        task.run();
+                    } catch (Throwable e) {
+                        error.set(e);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        start.countDown();
+        for (Thread thread : threads)
+            thread.join();
+
+        if (error.get() != null)
+            throw new AssertionError(error.get());
+    }
+
+    static class FakeTimeSource implements TimeSource {
+        long nanos = 1000000000L;
+
+        void advanceMillis(long millis) {
+            nanos += millis * 1000000L;
+        }
+
+        @Override
+        public long nanoTime() {
+            return nanos;
+        }
+    }
+
+    static class RecordingListener implements TimerEngine.Listener {
+        final List<String> events = new ArrayList<>();
+
+        int count(String event) {
+            int count = 0;
+            for (String e : events) {
+                if (e.equals(event))
+                    count++;
+            }
+            return count;
+        }
+
+        @Override
+        public void onTimeChanged(TimerEngine engine, long time, boolean fromUser) {
+            if (fromUser)
+                events.add("user:" + time);
+        }
+
+        @Override
+        public void onStartTrackingTouch(TimerEngine engine) {
+            events.add("startTracking");
+        }
+
+        @Override
+        public void onStopTrackingTouch(TimerEngine engine) {
+            events.add("stopTracking");
+        }
+
+        @Override
+        public void onPlayStarted(TimerEngine engine) {
+            events.add("started");
+        }
+
+        @Override
+        public void onPlayStopped(TimerEngine engine) {
+            events.add("stopped");
+        }
+
+        @Override
+        public void onPlayFinished(TimerEngine engine) {
+            events.add("finished");
+        }
+    }
+
+    static class CountingListener implements TimerEngine.Listener {
+        final AtomicInteger started = new AtomicInteger();
+        final AtomicInteger stopped = new AtomicInteger();
+        final AtomicInteger finished = new AtomicInteger();
+
+        @Override
+        public void onTimeChanged(TimerEngine engine, long time, boolean fromUser) {
+        }
+
+        @Override
+        public void onStartTrackingTouch(TimerEngine engine) {
+        }
+
+        @Override
+        public void onStopTrackingTouch(TimerEngine engine) {
+        }
+
+        @Override
+        public void onPlayStarted(TimerEngine engine) {
+            started.incrementAndGet();
+        }
+
+        @Override
+        public void onPlayStopped(TimerEngine engine) {
+            stopped.incrementAndGet();
+        }
+
+        @Override
+        public void onPlayFinished(TimerEngine engine) {
+            finished.incrementAndGet();
+        }
+    }
+
+    static class ManualExecutor implements Executor {
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty())
+                tasks.remove(0).run();
+        }
+    }
+}
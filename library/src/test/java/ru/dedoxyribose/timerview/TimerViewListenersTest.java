@@ -0,0 +1,164 @@
+package ru.dedoxyribose.timerview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the listener registry of TimerView: the event masks and the coalescing.
+ */
+public class TimerViewListenersTest {
+
+    private TimerViewListeners mListeners;
+
+    @Before
+    public void setUp() throws Exception {
+        mListeners = new TimerViewListeners();
+    }
+
+    @Test
+    public void dispatch_respectsTheEvents() throws Exception {
+        RecordingListener all = new RecordingListener();
+        RecordingListener finishOnly = new RecordingListener();
+        mListeners.add(all, TimerView.EVENT_ALL, 0);
+        mListeners.add(finishOnly, TimerView.EVENT_PLAY_FINISHED, 0);
+
+        mListeners.dispatchPlayStarted(null);
+        mListeners.dispatchPlayFinished(null, 5);
+
+        assertEquals(2, all.events.size());
+        assertEquals(1, finishOnly.events.size());
+        assertEquals("finished", finishOnly.events.get(0));
+        assertFalse(mListeners.hasListeners(TimerView.EVENT_TICK));
+    }
+
+    @Test
+    public void dispatchTimeChangedByUser_coalescesToTheLatestTime() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        mListeners.add(listener, TimerView.EVENT_ALL, 0);
+
+        mListeners.markTimeChangedByUser();
+        mListeners.markTimeChangedByUser();
+        assertEquals(-1, mListeners.dispatchTimeChangedByUser(null, 1500, 1000, false));
+        assertEquals(-1, mListeners.dispatchTimeChangedByUser(null, 1600, 1016, false));
+
+        assertEquals(1, listener.events.size());
+        assertEquals("user:1500", listener.events.get(0));
+    }
+
+    @Test
+    public void dispatchTimeChangedByUser_isRateLimited() throws Exception {
+        RecordingListener everyFrame = new RecordingListener();
+        RecordingListener slow = new RecordingListener();
+        mListeners.add(everyFrame, TimerView.EVENT_ALL, 0);
+        mListeners.add(slow, TimerView.EVENT_TIME_CHANGED_BY_USER, 100);
+
+        mListeners.markTimeChangedByUser();
+        assertEquals(-1, mListeners.dispatchTimeChangedByUser(null, 1000, 1000, false));
+
+        mListeners.markTimeChangedByUser();
+        assertEquals(84, mListeners.dispatchTimeChangedByUser(null, 2000, 1016, false));
+        assertEquals(2, everyFrame.events.size());
+        assertEquals(1, slow.events.size());
+
+        // the last value comes right away when forced, e.g. when the user lifts the finger
+        assertEquals(-1, mListeners.dispatchTimeChangedByUser(null, 2000, 1032, true));
+        assertEquals(2, everyFrame.events.size());
+        assertEquals("user:2000", slow.events.get(1));
+    }
+
+    @Test
+    public void remove_fromTheCallback() throws Exception {
+        final RecordingListener second = new RecordingListener();
+        RecordingListener first = new RecordingListener() {
+            @Override
+            public void onPlayStarted(TimerView timerView) {
+                super.onPlayStarted(timerView);
+                mListeners.remove(this);
+                mListeners.remove(second);
+            }
+        };
+        mListeners.add(first, TimerView.EVENT_ALL, 0);
+        mListeners.add(second, TimerView.EVENT_ALL, 0);
+
+        mListeners.dispatchPlayStarted(null);
+        mListeners.dispatchPlayStarted(null);
+
+        assertEquals(1, first.events.size());
+        assertEquals(1, second.events.size());
+        assertFalse(mListeners.hasListeners(TimerView.EVENT_ALL));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void add_rejectsTicksWithoutTickListener() throws Exception {
+        mListeners.add(new RecordingListener(), TimerView.EVENT_TICK, 0);
+    }
+
+    @Test
+    public void simpleListener_forwardsTheExtendedCallbacks() throws Exception {
+        final List<String> events = new ArrayList<>();
+        mListeners.add(new TimerView.SimpleOnTimerViewChangeListener() {
+            @Override
+            public void onTimeChangedByUser(TimerView timerView, int time) {
+                events.add("user:" + time);
+            }
+
+            @Override
+            public void onPlayFinished(TimerView timerView) {
+                events.add("finished");
+            }
+
+            @Override
+            public void onTick(TimerView timerView, long time) {
+                events.add("tick:" + time);
+            }
+        }, TimerView.EVENT_ALL | TimerView.EVENT_TICK, 0);
+
+        mListeners.markTimeChangedByUser();
+        mListeners.dispatchTimeChangedByUser(null, 3000000000L, 0, false);
+        mListeners.dispatchTick(null, 2000);
+        mListeners.dispatchPlayFinished(null, 1);
+
+        assertEquals("user:" + Integer.MAX_VALUE, events.get(0));
+        assertEquals("tick:2000", events.get(1));
+        assertEquals("finished", events.get(2));
+    }
+
+    static class RecordingListener implements TimerView.OnTimerViewChangeListener {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onTimeChangedByUser(TimerView timerView, int time) {
+            events.add("user:" + time);
+        }
+
+        @Override
+        public void onStartTrackingTouch(TimerView timerView) {
+            events.add("startTracking");
+        }
+
+        @Override
+        public void onStopTrackingTouch(TimerView timerView) {
+            events.add("stopTracking");
+        }
+
+        @Override
+        public void onPlayStarted(TimerView timerView) {
+            events.add("started");
+        }
+
+        @Override
+        public void onPlayStopped(TimerView timerView) {
+            events.add("stopped");
+        }
+
+        @Override
+        public void onPlayFinished(TimerView timerView) {
+            events.add("finished");
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package ru.dedoxyribose.timerview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the metrics histograms and the tick bookkeeping.
+ */
+public class TimerViewMetricsTest {
+
+    @Test
+    public void histogram_bucketsByPowersOfTwoMicroseconds() throws Exception {
+        assertEquals(0, TimerViewMetrics.Histogram.bucketOf(0));
+        assertEquals(0, TimerViewMetrics.Histogram.bucketOf(999));
+        assertEquals(1, TimerViewMetrics.Histogram.bucketOf(1000));
+        assertEquals(2, TimerViewMetrics.Histogram.bucketOf(3999));
+        assertEquals(3, TimerViewMetrics.Histogram.bucketOf(4000));
+        assertEquals(TimerViewMetrics.Histogram.BUCKET_COUNT - 1, TimerViewMetrics.Histogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void histogram_statistics() throws Exception {
+        TimerViewMetrics.Histogram histogram = new TimerViewMetrics.Histogram();
+        for (int i = 1; i <= 100; i++)
+            histogram.record(i * 100000L);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(100000L, histogram.getMinNanos());
+        assertEquals(10000000L, histogram.getMaxNanos());
+        assertEquals(5050000L, histogram.getMeanNanos());
+
+        // 50 ms falls into the [4096, 8192) microseconds bucket
+        assertEquals(8192000L, histogram.getPercentileNanos(50));
+        assertEquals(10000000L, histogram.getPercentileNanos(100));
+    }
+
+    @Test
+    public void recordTick_intervalsJitterAndLateTicks() throws Exception {
+        TimerViewMetrics metrics = new TimerViewMetrics();
+
+        metrics.recordTick(0, 1000000);
+        metrics.recordTick(16000000, 17000000);
+        metrics.recordTick(48000000, 70000000);
+
+        assertEquals(3, metrics.getTickLatency().getCount());
+        assertEquals(2, metrics.getTickInterval().getCount());
+        assertEquals(16000000, metrics.getTickInterval().getMinNanos());
+        assertEquals(32000000, metrics.getTickInterval().getMaxNanos());
+        assertEquals(1, metrics.getTickJitter().getCount());
+        assertEquals(16000000, metrics.getTickJitter().getMaxNanos());
+        assertEquals(1, metrics.getLateTickCount());
+
+        metrics.resetTickSequence();
+        metrics.recordTick(1000000000, 1000000000);
+        assertEquals(2, metrics.getTickInterval().getCount());
+    }
+
+    @Test
+    public void copy_isIndependentSnapshot() throws Exception {
+        TimerViewMetrics metrics = new TimerViewMetrics();
+        metrics.recordDraw(500000);
+        metrics.recordInvalidate();
+
+        TimerViewMetrics snapshot = metrics.copy();
+        metrics.recordDraw(700000);
+        metrics.recordInvalidate();
+
+        assertEquals(1, snapshot.getDrawTime().getCount());
+        assertEquals(1, snapshot.getInvalidateCount());
+        assertEquals(2, metrics.getDrawTime().getCount());
+    }
+
+    @Test
+    public void engine_overshootIsMeasuredFromDeadline() throws Exception {
+        TimerEngineTest.FakeTimeSource timeSource = new TimerEngineTest.FakeTimeSource();
+        TimerEngine engine = new TimerEngine(timeSource);
+        engine.setFullTime(1000);
+        engine.play();
+
+        timeSource.advanceMillis(1250);
+        engine.tick();
+
+        assertFalse(engine.isPlaying());
+        assertEquals(250000000L, engine.getOvershootNanos());
+    }
+}
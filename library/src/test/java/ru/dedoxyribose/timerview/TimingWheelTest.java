@@ -0,0 +1,147 @@
+package ru.dedoxyribose.timerview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the timing wheel, driven by a fake clock without the worker thread.
+ */
+public class TimingWheelTest {
+
+    private TimerEngineTest.FakeTimeSource mTimeSource;
+    private TimingWheel mWheel;
+    private List<Long> mOvershoots;
+    private TimingWheel.Callback mCallback;
+
+    @Before
+    public void setUp() throws Exception {
+        mTimeSource = new TimerEngineTest.FakeTimeSource();
+        mWheel = new TimingWheel(mTimeSource, 1, TimeUnit.MILLISECONDS);
+        mOvershoots = new ArrayList<>();
+        mCallback = new TimingWheel.Callback() {
+            @Override
+            public void onExpired(TimingWheel.Timeout timeout, long overshootNanos) {
+                mOvershoots.add(overshootNanos);
+            }
+        };
+    }
+
+    @Test
+    public void expire_runsAtTheDeadlineNotBefore() throws Exception {
+        mWheel.schedule(10, TimeUnit.MILLISECONDS, mCallback);
+
+        mTimeSource.advanceMillis(9);
+        assertEquals(0, mWheel.expire(mTimeSource.nanoTime()));
+
+        mTimeSource.advanceMillis(1);
+        assertEquals(1, mWheel.expire(mTimeSource.nanoTime()));
+        assertEquals(0L, (long) mOvershoots.get(0));
+        assertEquals(0, mWheel.getPendingCount());
+    }
+
+    @Test
+    public void expire_runsPastDeadlinesOnTheNextPass() throws Exception {
+        mTimeSource.advanceMillis(100);
+        mWheel.expire(mTimeSource.nanoTime());
+
+        mWheel.scheduleAt(mTimeSource.nanoTime() - 5000000, mCallback);
+        assertEquals(1, mWheel.expire(mTimeSource.nanoTime()));
+        assertEquals(5000000L, (long) mOvershoots.get(0));
+    }
+
+    @Test
+    public void cancel_removesTheTimeout() throws Exception {
+        TimingWheel.Timeout timeout = mWheel.schedule(10, TimeUnit.MILLISECONDS, mCallback);
+        mWheel.schedule(20, TimeUnit.MILLISECONDS, mCallback);
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertFalse(timeout.isPending());
+        assertEquals(1, mWheel.getPendingCount());
+
+        mTimeSource.advanceMillis(15);
+        assertEquals(0, mWheel.expire(mTimeSource.nanoTime()));
+    }
+
+    @Test
+    public void expire_cascadesFarDeadlines() throws Exception {
+        Random random = new Random(42);
+        int count = 5000;
+        for (int i = 0; i < count; i++) {
+            // up to ~2 days, past the second level; a few past the top one
+            long delay = i % 100 == 0 ? (1L << 33) + random.nextInt(1000) : random.nextInt(1 << 28);
+            mWheel.schedule(delay, TimeUnit.MILLISECONDS, mCallback);
+        }
+
+        long step = 1L << 22;
+        int expired = 0;
+        while (mWheel.getPendingCount() > 0) {
+            mTimeSource.advanceMillis(step);
+            expired += mWheel.expire(mTimeSource.nanoTime());
+        }
+
+        assertEquals(count, expired);
+        for (long overshoot : mOvershoots) {
+            assertTrue(overshoot >= 0);
+            assertTrue(overshoot < step * 1000000L);
+        }
+    }
+
+    @Test
+    public void scheduleFinish_runsBeforeTheEngineFinishes() throws Exception {
+        TimerEngine engine = new TimerEngine(mTimeSource);
+        engine.setFullTime(60000);
+        engine.play();
+
+        mWheel.scheduleFinish(engine, 10000000000L, mCallback);
+        mWheel.scheduleFinish(engine, 0, mCallback);
+
+        mTimeSource.advanceMillis(50000);
+        assertEquals(1, mWheel.expire(mTimeSource.nanoTime()));
+
+        mTimeSource.advanceMillis(10000);
+        assertEquals(1, mWheel.expire(mTimeSource.nanoTime()));
+        assertEquals(0, engine.getOvershootNanos());
+    }
+
+    @Test
+    public void start_runsTheCallbacksOnTheWorker() throws Exception {
+        final TimeSource systemTime = new TimeSource() {
+            @Override
+            public long nanoTime() {
+                return System.nanoTime();
+            }
+        };
+        TimingWheel wheel = new TimingWheel(systemTime, 1, TimeUnit.MILLISECONDS);
+        final CountDownLatch latch = new CountDownLatch(3);
+        final List<Thread> threads = new ArrayList<>();
+
+        wheel.start();
+        for (int i = 0; i < 3; i++) {
+            wheel.schedule(5 + i * 5, TimeUnit.MILLISECONDS, new TimingWheel.Callback() {
+                @Override
+                public void onExpired(TimingWheel.Timeout timeout, long overshootNanos) {
+                    synchronized (threads) {
+                        threads.add(Thread.currentThread());
+                    }
+                    assertTrue(systemTime.nanoTime() >= timeout.getDeadlineNanos());
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        wheel.shutdown();
+
+        assertNotSame(Thread.currentThread(), threads.get(0));
+        assertSame(threads.get(0), threads.get(2));
+    }
+}